@@ -0,0 +1,168 @@
+package be.twofold.tinycast;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+final class AsyncTransfer {
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final int LANES = 4;
+
+    private AsyncTransfer() {
+    }
+
+    static CompletableFuture<Cast> read(Path path, CastReadOptions options) {
+        AsynchronousFileChannel channel = null;
+        ByteBuffer buffer;
+        try {
+            channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ);
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new CastException("File too large to read asynchronously: " + size + " bytes");
+            }
+            buffer = ByteBuffer.allocateDirect((int) size);
+        } catch (IOException e) {
+            closeQuietly(channel);
+            return CompletableFuture.failedFuture(wrap(e, "Error reading cast file"));
+        }
+
+        // Decoding happens on the common pool, not on the thread that completed the last read
+        AsynchronousFileChannel finalChannel = channel;
+        return transfer(channel, buffer, false)
+            .whenComplete((__, e) -> closeQuietly(finalChannel))
+            .thenApplyAsync(__ -> {
+                try {
+                    return CastReader.read(buffer, options);
+                } catch (CastException e) {
+                    throw new CompletionException(e);
+                }
+            });
+    }
+
+    static CompletableFuture<Void> write(Cast cast, Path path) {
+        // Serializing happens on the common pool, and the file is only opened once it succeeded
+        return CompletableFuture
+            .supplyAsync(() -> {
+                try {
+                    return CastWriter.toByteBuffer(cast, CastBufferAllocator.direct());
+                } catch (CastException e) {
+                    throw new CompletionException(e);
+                }
+            })
+            .thenCompose(buffer -> write(buffer, path));
+    }
+
+    private static CompletableFuture<Void> write(ByteBuffer buffer, Path path) {
+        AsynchronousFileChannel channel;
+        try {
+            channel = AsynchronousFileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(wrap(e, "Error writing cast file"));
+        }
+
+        return transfer(channel, buffer, true)
+            .whenComplete((__, e) -> closeQuietly(channel));
+    }
+
+    // Transfers the buffer in chunks, with a fixed number of chunks in flight at any time.
+    // Every lane handles every LANES-th chunk, one after another.
+    static CompletableFuture<Void> transfer(AsynchronousFileChannel channel, ByteBuffer buffer, boolean write) {
+        int chunkCount = (int) ((buffer.remaining() + (long) CHUNK_SIZE - 1) / CHUNK_SIZE);
+        CompletableFuture<?>[] lanes = new CompletableFuture<?>[Math.min(chunkCount, LANES)];
+        for (int i = 0; i < lanes.length; i++) {
+            Lane lane = new Lane(channel, buffer.slice(), write, i, chunkCount);
+            lanes[i] = lane.future;
+            lane.start();
+        }
+        return CompletableFuture.allOf(lanes);
+    }
+
+    private static CastException wrap(IOException e, String message) {
+        return e instanceof CastException
+            ? (CastException) e
+            : new CastException(message, e);
+    }
+
+    private static void closeQuietly(AsynchronousFileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Nothing useful can be done at this point
+        }
+    }
+
+    private static final class Lane implements CompletionHandler<Integer, Void> {
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private final AsynchronousFileChannel channel;
+        private final ByteBuffer buffer;
+        private final boolean write;
+        private final int chunkCount;
+        private int chunk;
+        private ByteBuffer current;
+
+        private Lane(AsynchronousFileChannel channel, ByteBuffer buffer, boolean write, int chunk, int chunkCount) {
+            this.channel = channel;
+            this.buffer = buffer;
+            this.write = write;
+            this.chunk = chunk;
+            this.chunkCount = chunkCount;
+        }
+
+        private void start() {
+            int offset = chunk * CHUNK_SIZE;
+            current = buffer.duplicate()
+                .position(offset)
+                .limit(Math.min(buffer.limit(), offset + CHUNK_SIZE))
+                .slice();
+            next();
+        }
+
+        private void next() {
+            long position = (long) chunk * CHUNK_SIZE + current.position();
+            try {
+                if (write) {
+                    channel.write(current, position, null, this);
+                } else {
+                    channel.read(current, position, null, this);
+                }
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public void completed(Integer result, Void attachment) {
+            if (result < 0) {
+                failed(new EOFException("Unexpected end of file at " + ((long) chunk * CHUNK_SIZE + current.position())), null);
+                return;
+            }
+            if (current.hasRemaining()) {
+                next();
+                return;
+            }
+
+            chunk += LANES;
+            if (chunk >= chunkCount) {
+                future.complete(null);
+            } else {
+                start();
+            }
+        }
+
+        @Override
+        public void failed(Throwable exc, Void attachment) {
+            future.completeExceptionally(exc instanceof IOException
+                ? wrap((IOException) exc, write ? "Error writing cast file" : "Error reading cast file")
+                : exc);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package be.twofold.tinycast;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+final class BatchReader {
+    private final CastReadOptions options;
+    private final CastBatchHandler handler;
+    private final Cast[] casts;
+    private final BlockingQueue<Result> results = new LinkedBlockingQueue<>();
+    private int filesInFlight;
+    private long bytesInFlight;
+
+    // Results are either collected in order into casts, or handed to the handler as they arrive
+    private BatchReader(CastReadOptions options, CastBatchHandler handler, Cast[] casts) {
+        this.options = Objects.requireNonNull(options);
+        this.handler = handler;
+        this.casts = casts;
+    }
+
+    static List<Cast> readAll(Collection<Path> paths, CastReadOptions options) throws CastException {
+        Cast[] casts = new Cast[paths.size()];
+        new BatchReader(options, null, casts).run(List.copyOf(paths));
+        return List.of(casts);
+    }
+
+    static void readAll(Collection<Path> paths, CastReadOptions options, CastBatchHandler handler) throws CastException {
+        new BatchReader(options, Objects.requireNonNull(handler), null).run(List.copyOf(paths));
+    }
+
+    private void run(List<Path> paths) throws CastException {
+        ExecutorService executor = newExecutor();
+        try {
+            for (int i = 0; i < paths.size(); i++) {
+                Path path = paths.get(i);
+                int index = i;
+                long size;
+                try {
+                    size = Files.size(path);
+                } catch (IOException e) {
+                    failed(path, new CastException("Error reading cast file", e));
+                    continue;
+                }
+
+                while (!tryAcquire(size)) {
+                    handle(results.take());
+                }
+                executor.execute(() -> results.add(read(index, path, size)));
+            }
+            while (filesInFlight > 0) {
+                handle(results.take());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CastException("Interrupted while reading cast files", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Every outcome is queued, also errors like an OutOfMemoryError, otherwise run would wait forever
+    private Result read(int index, Path path, long size) {
+        try {
+            return new Result(index, path, size, CastReader.read(path, options), null, null);
+        } catch (CastException e) {
+            return new Result(index, path, size, null, e, null);
+        } catch (RuntimeException e) {
+            return new Result(index, path, size, null, new CastException("Error reading cast file", e), null);
+        } catch (Error e) {
+            return new Result(index, path, size, null, new CastException("Error reading cast file", e), e);
+        }
+    }
+
+    private boolean tryAcquire(long size) {
+        if (filesInFlight >= options.getMaxConcurrency()) {
+            return false;
+        }
+        // A file that is larger than the limit on its own can still be read, just not concurrently
+        if (filesInFlight > 0 && bytesInFlight + size > options.getMaxBytesInFlight()) {
+            return false;
+        }
+        filesInFlight++;
+        bytesInFlight += size;
+        return true;
+    }
+
+    private void handle(Result result) throws CastException {
+        try {
+            if (result.error != null && handler == null) {
+                throw result.error;
+            }
+            if (result.exception != null) {
+                failed(result.path, result.exception);
+            } else if (casts != null) {
+                casts[result.index] = result.cast;
+            } else {
+                handler.read(result.path, result.cast);
+            }
+        } finally {
+            filesInFlight--;
+            bytesInFlight -= result.size;
+        }
+    }
+
+    private void failed(Path path, CastException exception) throws CastException {
+        if (handler == null) {
+            // Collecting in order can't skip a file, so the first failure aborts the batch
+            throw exception;
+        }
+        handler.failed(path, exception);
+    }
+
+    private static ExecutorService newExecutor() {
+        try {
+            // Virtual threads are only available from Java 21
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "tinycast-batch");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private static final class Result {
+        private final int index;
+        private final Path path;
+        private final long size;
+        private final Cast cast;
+        private final CastException exception;
+        private final Error error;
+
+        private Result(int index, Path path, long size, Cast cast, CastException exception, Error error) {
+            this.index = index;
+            this.path = path;
+            this.size = size;
+            this.cast = cast;
+            this.exception = exception;
+            this.error = error;
+        }
+    }
+}
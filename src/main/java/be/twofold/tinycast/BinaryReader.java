@@ -1,99 +1,63 @@
 package be.twofold.tinycast;
 
-import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
-import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.charset.StandardCharsets;
-import java.util.Objects;
 
-final class BinaryReader implements Closeable {
-    private final ByteBuffer buffer = ByteBuffer
-        .allocate(8)
-        .order(ByteOrder.LITTLE_ENDIAN);
+abstract class BinaryReader implements Closeable {
+    abstract long position();
 
-    private final InputStream in;
+    abstract void skip(long length) throws IOException;
 
-    BinaryReader(InputStream in) {
-        this.in = Objects.requireNonNull(in);
-    }
+    abstract byte readByte() throws IOException;
 
-    byte readByte() throws IOException {
-        int read = in.read();
-        if (read < 0) {
-            throw new EOFException("Unexpected end of stream");
-        }
-        return (byte) read;
-    }
+    abstract short readShort() throws IOException;
 
-    short readShort() throws IOException {
-        buffer(Short.BYTES);
-        return buffer.getShort(0);
-    }
+    abstract int readInt() throws IOException;
 
-    int readInt() throws IOException {
-        buffer(Integer.BYTES);
-        return buffer.getInt(0);
-    }
+    abstract long readLong() throws IOException;
 
-    long readLong() throws IOException {
-        buffer(Long.BYTES);
-        return buffer.getLong(0);
-    }
+    abstract float readFloat() throws IOException;
 
-    float readFloat() throws IOException {
-        buffer(Float.BYTES);
-        return buffer.getFloat(0);
-    }
+    abstract double readDouble() throws IOException;
 
-    double readDouble() throws IOException {
-        buffer(Double.BYTES);
-        return buffer.getDouble(0);
-    }
+    abstract String readCString() throws IOException;
+
+    abstract String readString(int length) throws IOException;
 
-    String readCString() throws IOException {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        while (true) {
-            byte b = readByte();
-            if (b == 0) {
-                break;
-            }
-            out.write(b);
+    long readPacked(int length) throws IOException {
+        long result = 0;
+        for (int i = 0; i < length; i++) {
+            result |= (readByte() & 0xFFL) << (i * Byte.SIZE);
         }
-        return out.toString(StandardCharsets.UTF_8);
+        return result;
     }
 
-    String readString(int length) throws IOException {
-        byte[] bytes = readBytes(length);
-        return new String(bytes, StandardCharsets.UTF_8);
+    void skipCString() throws IOException {
+        while (readByte() != 0) {
+            // skip until the terminator
+        }
     }
 
-    ByteBuffer readBuffer(int length) throws IOException {
-        byte[] bytes = readBytes(length);
-        return ByteBuffer.wrap(bytes)
-            .order(ByteOrder.LITTLE_ENDIAN);
+    abstract ByteBuffer readBuffer(int length) throws IOException;
+
+    ByteBuffer readTransientBuffer(int length) throws IOException {
+        return readBuffer(length);
     }
 
-    private void buffer(int length) throws IOException {
-        int read = in.readNBytes(buffer.array(), 0, length);
-        if (read != length) {
-            throw new EOFException("Expected " + length + " bytes but got " + read);
-        }
+    void read(ByteBuffer dst) throws IOException {
+        dst.put(readTransientBuffer(dst.remaining()));
     }
 
-    private byte[] readBytes(int length) throws IOException {
-        byte[] bytes = in.readNBytes(length);
-        if (bytes.length != length) {
-            throw new EOFException("Expected " + length + " bytes but got " + bytes.length);
+    void readFloats(float[] dst, int offset, int length) throws IOException {
+        for (int i = offset; i < offset + length; i++) {
+            dst[i] = readFloat();
         }
-        return bytes;
     }
 
-    @Override
-    public void close() throws IOException {
-        in.close();
+    void readInts(int[] dst, int offset, int length) throws IOException {
+        for (int i = offset; i < offset + length; i++) {
+            dst[i] = readInt();
+        }
     }
 }
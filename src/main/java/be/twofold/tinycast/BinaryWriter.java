@@ -2,57 +2,220 @@ package be.twofold.tinycast;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
 final class BinaryWriter implements Closeable {
-    private final ByteBuffer buffer = ByteBuffer
-        .allocate(8)
-        .order(ByteOrder.LITTLE_ENDIAN);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MIN_GATHER_SIZE = 4 * 1024;
+    private static final int MAX_PENDING = 64;
 
-    private final OutputStream out;
+    private final ByteBuffer buffer;
+    private final WritableByteChannel channel;
+    private final List<ByteBuffer> pending = new ArrayList<>();
+    private int pendingStart;
+    private long pendingBytes;
+    private long written;
 
-    BinaryWriter(OutputStream out) {
-        this.out = Objects.requireNonNull(out);
+    BinaryWriter(WritableByteChannel channel) {
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        this.channel = Objects.requireNonNull(channel);
+    }
+
+    // Writes straight into the target, from its position to its limit, without a channel behind it
+    BinaryWriter(ByteBuffer target) {
+        this.buffer = target.slice().order(ByteOrder.LITTLE_ENDIAN);
+        this.channel = null;
     }
 
     void writeByte(byte b) throws IOException {
-        out.write(b);
+        ensure(Byte.BYTES);
+        buffer.put(b);
     }
 
     void writeShort(short value) throws IOException {
-        buffer.putShort(0, value);
-        out.write(buffer.array(), 0, Short.BYTES);
+        ensure(Short.BYTES);
+        buffer.putShort(value);
     }
 
     void writeInt(int value) throws IOException {
-        buffer.putInt(0, value);
-        out.write(buffer.array(), 0, Integer.BYTES);
+        ensure(Integer.BYTES);
+        buffer.putInt(value);
     }
 
     void writeLong(long value) throws IOException {
-        buffer.putLong(0, value);
-        out.write(buffer.array(), 0, Long.BYTES);
+        ensure(Long.BYTES);
+        buffer.putLong(value);
     }
 
     void writeFloat(float value) throws IOException {
-        buffer.putFloat(0, value);
-        out.write(buffer.array(), 0, Float.BYTES);
+        ensure(Float.BYTES);
+        buffer.putFloat(value);
     }
 
     void writeDouble(double value) throws IOException {
-        buffer.putDouble(0, value);
-        out.write(buffer.array(), 0, Double.BYTES);
+        ensure(Double.BYTES);
+        buffer.putDouble(value);
     }
 
     void writeBytes(byte[] bytes) throws IOException {
-        out.write(bytes);
+        int offset = 0;
+        while (offset < bytes.length) {
+            ensure(1);
+            int count = Math.min(bytes.length - offset, buffer.remaining());
+            buffer.put(bytes, offset, count);
+            offset += count;
+        }
+    }
+
+    // Large buffers are handed to the channel as-is, so they must not change until the next flush
+    void writeRaw(ByteBuffer bytes) throws IOException {
+        ByteBuffer source = bytes.duplicate();
+        if (channel == null || source.remaining() < MIN_GATHER_SIZE) {
+            while (source.hasRemaining()) {
+                ensure(1);
+                int count = Math.min(source.remaining(), buffer.remaining());
+                buffer.put(source.duplicate().limit(source.position() + count));
+                source.position(source.position() + count);
+            }
+            return;
+        }
+
+        if (!(channel instanceof GatheringByteChannel)) {
+            flush();
+            writeFully(source);
+            return;
+        }
+
+        addPendingHeader();
+        pending.add(source);
+        pendingBytes += source.remaining();
+        if (pending.size() >= MAX_PENDING) {
+            flush();
+        }
+    }
+
+    void writeBuffer(Buffer value) throws IOException {
+        Buffer source = value.slice();
+        if (source instanceof ByteBuffer) {
+            writeRaw((ByteBuffer) source);
+            return;
+        }
+
+        // Convert in chunks that fit in the buffer, which is a plain copy when the byte order matches
+        int elementSize = Buffers.elementSize(source);
+        while (source.hasRemaining()) {
+            ensure(elementSize);
+            int count = Math.min(source.remaining(), buffer.remaining() / elementSize);
+            int limit = source.position() + count;
+            if (source instanceof ShortBuffer) {
+                buffer.asShortBuffer().put(((ShortBuffer) source.duplicate()).limit(limit));
+            } else if (source instanceof IntBuffer) {
+                buffer.asIntBuffer().put(((IntBuffer) source.duplicate()).limit(limit));
+            } else if (source instanceof LongBuffer) {
+                buffer.asLongBuffer().put(((LongBuffer) source.duplicate()).limit(limit));
+            } else if (source instanceof FloatBuffer) {
+                buffer.asFloatBuffer().put(((FloatBuffer) source.duplicate()).limit(limit));
+            } else if (source instanceof DoubleBuffer) {
+                buffer.asDoubleBuffer().put(((DoubleBuffer) source.duplicate()).limit(limit));
+            } else {
+                throw new UnsupportedOperationException("Unsupported buffer type: " + source.getClass().getName());
+            }
+            source.position(limit);
+            buffer.position(buffer.position() + count * elementSize);
+        }
+    }
+
+    long position() {
+        return written + pendingBytes + buffer.position();
+    }
+
+    // Overwrites earlier bytes, which is only possible while they're still in the buffer
+    boolean patch(long position, ByteBuffer bytes) {
+        if (!pending.isEmpty() || position < written || position + bytes.remaining() > position()) {
+            return false;
+        }
+        int index = (int) (position - written);
+        for (int i = 0; i < bytes.remaining(); i++) {
+            buffer.put(index + i, bytes.get(bytes.position() + i));
+        }
+        return true;
+    }
+
+    // Writes out any queued buffers, so the caller is free to change them afterwards
+    void flushPending() throws IOException {
+        if (!pending.isEmpty()) {
+            flush();
+        }
+    }
+
+    void flush() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        if (pending.isEmpty()) {
+            buffer.flip();
+            writeFully(buffer);
+        } else {
+            addPendingHeader();
+            ByteBuffer[] buffers = pending.toArray(new ByteBuffer[0]);
+            GatheringByteChannel gathering = (GatheringByteChannel) channel;
+            int first = 0;
+            while (first < buffers.length) {
+                written += gathering.write(buffers, first, buffers.length - first);
+                while (first < buffers.length && !buffers[first].hasRemaining()) {
+                    first++;
+                }
+            }
+            pending.clear();
+            pendingBytes = 0;
+        }
+        buffer.clear();
+        pendingStart = 0;
+    }
+
+    private void ensure(int length) throws IOException {
+        if (buffer.remaining() < length) {
+            if (channel == null) {
+                throw new BufferOverflowException();
+            }
+            flush();
+        }
+    }
+
+    private void addPendingHeader() {
+        if (buffer.position() > pendingStart) {
+            pending.add(buffer.duplicate().position(pendingStart).limit(buffer.position()));
+            pendingStart = buffer.position();
+        }
+    }
+
+    private void writeFully(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            written += channel.write(source);
+        }
     }
 
     @Override
     public void close() throws IOException {
-        out.close();
+        try {
+            flush();
+        } finally {
+            if (channel != null) {
+                channel.close();
+            }
+        }
     }
 }
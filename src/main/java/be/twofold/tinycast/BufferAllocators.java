@@ -0,0 +1,90 @@
+package be.twofold.tinycast;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+final class BufferAllocators {
+    private BufferAllocators() {
+    }
+
+    static ByteBuffer copy(CastBufferAllocator allocator, ByteBuffer source) {
+        ByteBuffer result = allocate(allocator, source.remaining());
+        result.put(source.duplicate());
+        return result.flip();
+    }
+
+    static ByteBuffer allocate(CastBufferAllocator allocator, int capacity) {
+        ByteBuffer buffer = allocator.allocate(capacity);
+        if (buffer.position() != 0 || buffer.limit() < capacity) {
+            throw new IllegalStateException("Allocator returned an invalid buffer: " + buffer);
+        }
+        return buffer.limit(capacity).slice();
+    }
+
+    static final class Pooled implements CastBufferAllocator {
+        private static final int MIN_SIZE_CLASS = 6;
+        private static final int MAX_SIZE_CLASS = 30;
+
+        private final List<ArrayDeque<ByteBuffer>> free = new ArrayList<>();
+        private final List<ByteBuffer> used = new ArrayList<>();
+
+        @Override
+        public synchronized ByteBuffer allocate(int capacity) {
+            if (capacity > 1 << MAX_SIZE_CLASS) {
+                return ByteBuffer.allocateDirect(capacity);
+            }
+
+            int sizeClass = Math.max(MIN_SIZE_CLASS, Integer.SIZE - Integer.numberOfLeadingZeros(Math.max(capacity, 1) - 1));
+            while (free.size() <= sizeClass) {
+                free.add(new ArrayDeque<>());
+            }
+
+            ByteBuffer buffer = free.get(sizeClass).poll();
+            if (buffer == null) {
+                buffer = ByteBuffer.allocateDirect(1 << sizeClass);
+            }
+            used.add(buffer);
+            return buffer.clear().limit(capacity);
+        }
+
+        @Override
+        public synchronized void reset() {
+            for (ByteBuffer buffer : used) {
+                free.get(Integer.numberOfTrailingZeros(buffer.capacity())).add(buffer);
+            }
+            used.clear();
+        }
+    }
+
+    static final class Arena implements CastBufferAllocator {
+        private static final int ALIGNMENT = Long.BYTES;
+
+        private final ByteBuffer arena;
+        private int offset;
+
+        Arena(ByteBuffer arena) {
+            this.arena = Objects.requireNonNull(arena).slice();
+        }
+
+        @Override
+        public synchronized ByteBuffer allocate(int capacity) {
+            if (capacity > arena.capacity() - offset) {
+                throw new IllegalStateException("Arena exhausted, requested " + capacity + " bytes but only " + (arena.capacity() - offset) + " are left");
+            }
+            ByteBuffer result = arena.duplicate()
+                .position(offset)
+                .limit(offset + capacity)
+                .slice();
+            offset = Math.min(arena.capacity(), (offset + capacity + ALIGNMENT - 1) & -ALIGNMENT);
+            return result;
+        }
+
+        @Override
+        public synchronized void reset() {
+            offset = 0;
+        }
+    }
+}
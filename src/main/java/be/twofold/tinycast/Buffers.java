@@ -2,16 +2,15 @@ package be.twofold.tinycast;
 
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.CharBuffer;
 import java.nio.DoubleBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.nio.LongBuffer;
 import java.nio.ShortBuffer;
-import java.util.function.Consumer;
 
 final class Buffers {
+    private static final int CHUNK_SIZE = 8192;
+
     private Buffers() {
     }
 
@@ -19,81 +18,175 @@ final class Buffers {
         if (buffer instanceof ByteBuffer) {
             return buffer;
         }
+        return shrink(buffer, Integer.toUnsignedLong(bits(buffer)));
+    }
 
-        if (buffer instanceof ShortBuffer) {
-            ShortBuffer slice = ((ShortBuffer) buffer).slice();
+    // Narrows to the smallest integral type that holds all values up to max, which is trusted
+    static Buffer shrink(Buffer buffer, long max) {
+        if (buffer instanceof ByteBuffer) {
+            return buffer;
+        }
 
-            int max = 0;
-            while (slice.hasRemaining()) {
-                max = Math.max(max, Short.toUnsignedInt(slice.get()));
-            }
+        if (buffer instanceof ShortBuffer) {
+            return max <= 0xFF
+                ? toBytes((ShortBuffer) buffer)
+                : buffer;
+        }
 
-            slice.rewind();
+        if (buffer instanceof IntBuffer) {
             if (max <= 0xFF) {
-                ByteBuffer result = ByteBuffer.allocate(slice.remaining());
-                while (slice.hasRemaining()) {
-                    result.put((byte) slice.get());
-                }
-                return result.flip();
+                return toBytes((IntBuffer) buffer);
+            }
+            if (max <= 0xFFFF) {
+                return toShorts((IntBuffer) buffer);
             }
             return buffer;
         }
 
-        if (buffer instanceof IntBuffer) {
-            IntBuffer slice = ((IntBuffer) buffer).slice();
+        throw new UnsupportedOperationException("Only integral buffers are supported");
+    }
 
-            long max = 0;
-            while (slice.hasRemaining()) {
-                max = Math.max(max, Integer.toUnsignedLong(slice.get()));
+    // The bitwise or of all values has the same highest bit as the maximum, which is all that's
+    // needed to pick a type. Unlike a running maximum, it's a reduction the JIT can vectorize.
+    private static int bits(Buffer buffer) {
+        if (buffer instanceof ShortBuffer) {
+            ShortBuffer source = ((ShortBuffer) buffer).slice();
+            if (source.hasArray()) {
+                return bits(source.array(), source.arrayOffset(), source.remaining()) & 0xFFFF;
             }
 
-            slice.rewind();
-            if (max <= 0xFF) {
-                ByteBuffer result = ByteBuffer.allocate(slice.remaining());
-                while (slice.hasRemaining()) {
-                    result.put((byte) slice.get());
-                }
-                return result.flip();
+            short[] chunk = new short[Math.min(CHUNK_SIZE, source.remaining())];
+            int result = 0;
+            while (source.hasRemaining()) {
+                int count = Math.min(chunk.length, source.remaining());
+                source.get(chunk, 0, count);
+                result |= bits(chunk, 0, count);
             }
-            if (max <= 0xFFFF) {
-                ShortBuffer result = ShortBuffer.allocate(slice.remaining());
-                while (slice.hasRemaining()) {
-                    result.put((short) slice.get());
-                }
-                return result.flip();
+            return result & 0xFFFF;
+        }
+
+        if (buffer instanceof IntBuffer) {
+            IntBuffer source = ((IntBuffer) buffer).slice();
+            if (source.hasArray()) {
+                return bits(source.array(), source.arrayOffset(), source.remaining());
             }
-            return buffer;
+
+            int[] chunk = new int[Math.min(CHUNK_SIZE, source.remaining())];
+            int result = 0;
+            while (source.hasRemaining()) {
+                int count = Math.min(chunk.length, source.remaining());
+                source.get(chunk, 0, count);
+                result |= bits(chunk, 0, count);
+            }
+            return result;
         }
 
         throw new UnsupportedOperationException("Only integral buffers are supported");
     }
 
-    static byte[] toByteArray(Buffer buffer) {
-        Buffer slice = buffer.slice();
-        if (slice instanceof ByteBuffer) {
-            return allocateAndApply(slice.remaining(), bb -> bb.put((ByteBuffer) slice));
-        } else if (slice instanceof ShortBuffer) {
-            return allocateAndApply(slice.remaining() * Short.BYTES, bb -> bb.asShortBuffer().put((ShortBuffer) slice));
-        } else if (slice instanceof IntBuffer) {
-            return allocateAndApply(slice.remaining() * Integer.BYTES, bb -> bb.asIntBuffer().put((IntBuffer) slice));
-        } else if (slice instanceof LongBuffer) {
-            return allocateAndApply(slice.remaining() * Long.BYTES, bb -> bb.asLongBuffer().put((LongBuffer) slice));
-        } else if (slice instanceof FloatBuffer) {
-            return allocateAndApply(slice.remaining() * Float.BYTES, bb -> bb.asFloatBuffer().put((FloatBuffer) slice));
-        } else if (slice instanceof DoubleBuffer) {
-            return allocateAndApply(slice.remaining() * Double.BYTES, bb -> bb.asDoubleBuffer().put((DoubleBuffer) slice));
-        } else if (slice instanceof CharBuffer) {
-            return allocateAndApply(slice.remaining() * Character.BYTES, bb -> bb.asCharBuffer().put((CharBuffer) slice));
-        } else {
-            throw new UnsupportedOperationException();
+    private static int bits(short[] array, int offset, int length) {
+        int result = 0;
+        for (int i = offset; i < offset + length; i++) {
+            result |= array[i];
+        }
+        return result;
+    }
+
+    private static int bits(int[] array, int offset, int length) {
+        int result = 0;
+        for (int i = offset; i < offset + length; i++) {
+            result |= array[i];
         }
+        return result;
     }
 
-    private static byte[] allocateAndApply(int capacity, Consumer<ByteBuffer> consumer) {
-        ByteBuffer byteBuffer = ByteBuffer
-            .allocate(capacity)
-            .order(ByteOrder.LITTLE_ENDIAN);
-        consumer.accept(byteBuffer);
-        return byteBuffer.array();
+    private static ByteBuffer toBytes(ShortBuffer buffer) {
+        ShortBuffer source = buffer.slice();
+        byte[] result = new byte[source.remaining()];
+        if (source.hasArray()) {
+            narrow(source.array(), source.arrayOffset(), result, 0, result.length);
+            return ByteBuffer.wrap(result);
+        }
+
+        short[] chunk = new short[Math.min(CHUNK_SIZE, result.length)];
+        for (int done = 0; done < result.length; ) {
+            int count = Math.min(chunk.length, result.length - done);
+            source.get(chunk, 0, count);
+            narrow(chunk, 0, result, done, count);
+            done += count;
+        }
+        return ByteBuffer.wrap(result);
+    }
+
+    private static ByteBuffer toBytes(IntBuffer buffer) {
+        IntBuffer source = buffer.slice();
+        byte[] result = new byte[source.remaining()];
+        if (source.hasArray()) {
+            narrow(source.array(), source.arrayOffset(), result, 0, result.length);
+            return ByteBuffer.wrap(result);
+        }
+
+        int[] chunk = new int[Math.min(CHUNK_SIZE, result.length)];
+        for (int done = 0; done < result.length; ) {
+            int count = Math.min(chunk.length, result.length - done);
+            source.get(chunk, 0, count);
+            narrow(chunk, 0, result, done, count);
+            done += count;
+        }
+        return ByteBuffer.wrap(result);
+    }
+
+    private static ShortBuffer toShorts(IntBuffer buffer) {
+        IntBuffer source = buffer.slice();
+        short[] result = new short[source.remaining()];
+        if (source.hasArray()) {
+            narrow(source.array(), source.arrayOffset(), result, 0, result.length);
+            return ShortBuffer.wrap(result);
+        }
+
+        int[] chunk = new int[Math.min(CHUNK_SIZE, result.length)];
+        for (int done = 0; done < result.length; ) {
+            int count = Math.min(chunk.length, result.length - done);
+            source.get(chunk, 0, count);
+            narrow(chunk, 0, result, done, count);
+            done += count;
+        }
+        return ShortBuffer.wrap(result);
+    }
+
+    private static void narrow(short[] src, int srcOffset, byte[] dst, int dstOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            dst[dstOffset + i] = (byte) src[srcOffset + i];
+        }
+    }
+
+    private static void narrow(int[] src, int srcOffset, byte[] dst, int dstOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            dst[dstOffset + i] = (byte) src[srcOffset + i];
+        }
+    }
+
+    private static void narrow(int[] src, int srcOffset, short[] dst, int dstOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            dst[dstOffset + i] = (short) src[srcOffset + i];
+        }
+    }
+
+    static int elementSize(Buffer buffer) {
+        if (buffer instanceof ByteBuffer) {
+            return Byte.BYTES;
+        } else if (buffer instanceof ShortBuffer) {
+            return Short.BYTES;
+        } else if (buffer instanceof IntBuffer) {
+            return Integer.BYTES;
+        } else if (buffer instanceof LongBuffer) {
+            return Long.BYTES;
+        } else if (buffer instanceof FloatBuffer) {
+            return Float.BYTES;
+        } else if (buffer instanceof DoubleBuffer) {
+            return Double.BYTES;
+        } else {
+            throw new UnsupportedOperationException();
+        }
     }
 }
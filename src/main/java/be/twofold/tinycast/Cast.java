@@ -2,11 +2,17 @@ package be.twofold.tinycast;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -26,10 +32,15 @@ import java.util.concurrent.atomic.AtomicLong;
 public final class Cast {
     private final AtomicLong hasher;
     private final List<CastNode> rootNodes;
+    private final NodeIndex index;
 
     Cast(AtomicLong hasher, List<CastNode> rootNodes) {
         this.hasher = Objects.requireNonNull(hasher);
         this.rootNodes = Objects.requireNonNull(rootNodes);
+        this.index = new NodeIndex(rootNodes);
+        for (CastNode rootNode : rootNodes) {
+            index.add(rootNode);
+        }
     }
 
     private Cast(long initialHash, List<CastNode> rootNodes) {
@@ -71,7 +82,213 @@ public final class Cast {
      * @throws CastException if an error occurs while reading or parsing the Cast file
      */
     public static Cast read(InputStream in) throws CastException {
-        return CastReader.read(in);
+        return read(in, CastReadOptions.defaults());
+    }
+
+    /**
+     * Reads a Cast file from the specified input stream, using the given options.
+     * <p>
+     * Options that require a seekable source, like {@linkplain CastReadOptions#withLazy(boolean)
+     * lazy mode}, are ignored.
+     *
+     * @param in      the input stream to read from
+     * @param options the options that control the reading
+     * @return a Cast instance containing the deserialized data
+     * @throws CastException if an error occurs while reading or parsing the Cast file
+     */
+    public static Cast read(InputStream in, CastReadOptions options) throws CastException {
+        return CastReader.read(in, options);
+    }
+
+    /**
+     * Reads a Cast file from the specified path.
+     * <p>
+     * The file is memory-mapped instead of being streamed. Array properties are not copied,
+     * but are exposed as read-only, little-endian views on the mapped file, so only the parts
+     * of the file that are actually accessed are loaded into memory. The file should not be
+     * modified while the returned Cast is in use.
+     *
+     * @param path the path of the file to read
+     * @return a Cast instance containing the deserialized data
+     * @throws CastException if an error occurs while reading or parsing the Cast file
+     */
+    public static Cast read(Path path) throws CastException {
+        return read(path, CastReadOptions.defaults());
+    }
+
+    /**
+     * Reads a Cast file from the specified path, using the given options.
+     * <p>
+     * The file is memory-mapped, as described in {@link #read(Path)}. In {@linkplain
+     * CastReadOptions#withLazy(boolean) lazy mode}, array properties are only mapped when they
+     * are first accessed, by reopening the file.
+     *
+     * @param path    the path of the file to read
+     * @param options the options that control the reading
+     * @return a Cast instance containing the deserialized data
+     * @throws CastException if an error occurs while reading or parsing the Cast file
+     */
+    public static Cast read(Path path, CastReadOptions options) throws CastException {
+        return CastReader.read(path, options);
+    }
+
+    /**
+     * Reads a Cast file from the specified file channel, starting at its current position.
+     * <p>
+     * This behaves like {@link #read(Path)}, the file is memory-mapped and array properties are
+     * exposed as read-only views on the mapping. The channel is not closed, and its position is
+     * advanced to the end of the Cast data. The mapping stays valid after the channel is closed.
+     *
+     * @param channel the file channel to read from
+     * @return a Cast instance containing the deserialized data
+     * @throws CastException if an error occurs while reading or parsing the Cast file
+     */
+    public static Cast read(FileChannel channel) throws CastException {
+        return read(channel, CastReadOptions.defaults());
+    }
+
+    /**
+     * Reads a Cast file from the specified file channel, using the given options.
+     * <p>
+     * This behaves like {@link #read(FileChannel)}. In {@linkplain CastReadOptions#withLazy(boolean)
+     * lazy mode}, array properties are mapped from the channel when they are first accessed,
+     * so the channel must stay open for as long as unaccessed properties are needed.
+     *
+     * @param channel the file channel to read from
+     * @param options the options that control the reading
+     * @return a Cast instance containing the deserialized data
+     * @throws CastException if an error occurs while reading or parsing the Cast file
+     */
+    public static Cast read(FileChannel channel, CastReadOptions options) throws CastException {
+        return CastReader.read(channel, options);
+    }
+
+    /**
+     * Reads a Cast file from the specified buffer, starting at its current position.
+     * <p>
+     * Array properties are not copied, but are exposed as little-endian views on the buffer.
+     * The position of the buffer is advanced to the end of the Cast data.
+     *
+     * @param buffer the buffer to read from
+     * @return a Cast instance containing the deserialized data
+     * @throws CastException if an error occurs while reading or parsing the Cast file
+     */
+    public static Cast read(ByteBuffer buffer) throws CastException {
+        return read(buffer, CastReadOptions.defaults());
+    }
+
+    /**
+     * Reads a Cast file from the specified buffer, using the given options.
+     * <p>
+     * This behaves like {@link #read(ByteBuffer)}.
+     *
+     * @param buffer  the buffer to read from
+     * @param options the options that control the reading
+     * @return a Cast instance containing the deserialized data
+     * @throws CastException if an error occurs while reading or parsing the Cast file
+     */
+    public static Cast read(ByteBuffer buffer, CastReadOptions options) throws CastException {
+        return CastReader.read(buffer, options);
+    }
+
+    /**
+     * Reads a batch of Cast files concurrently, returning the results in order.
+     * <p>
+     * Every file is read as described in {@link #read(Path, CastReadOptions)}, on a virtual thread
+     * when running on Java 21 or later, and on a platform thread otherwise. The number of files
+     * that are read at the same time, and the total size of these files, are limited by
+     * {@link CastReadOptions#withMaxConcurrency(int)} and
+     * {@link CastReadOptions#withMaxBytesInFlight(long)}. Note that all results are kept until the
+     * whole batch is done, use {@link #readAll(Collection, CastReadOptions, CastBatchHandler)} to
+     * process them as they complete.
+     *
+     * @param paths   the paths of the files to read
+     * @param options the options that control the reading
+     * @return the Casts that were read, in the same order as the paths
+     * @throws CastException if an error occurs while reading or parsing any of the files,
+     *                       in which case the remaining reads are cancelled. An {@link Error},
+     *                       like an {@link OutOfMemoryError}, is rethrown as is.
+     */
+    public static List<Cast> readAll(Collection<Path> paths, CastReadOptions options) throws CastException {
+        return BatchReader.readAll(paths, options);
+    }
+
+    /**
+     * Reads a batch of Cast files concurrently, handing over the results as they complete.
+     * <p>
+     * Files are read as described in {@link #readAll(Collection, CastReadOptions)}. The handler is
+     * called on the calling thread, and the bytes of a file stay in flight until the handler
+     * returns, so a slow handler throttles the batch instead of letting results pile up. An
+     * {@link Error} while reading a file, like an {@link OutOfMemoryError}, is passed to
+     * {@link CastBatchHandler#failed} as the cause of a {@link CastException}.
+     *
+     * @param paths   the paths of the files to read
+     * @param options the options that control the reading
+     * @param handler the handler that receives the results
+     * @throws CastException if the handler throws, in which case the remaining reads are cancelled
+     */
+    public static void readAll(Collection<Path> paths, CastReadOptions options, CastBatchHandler handler) throws CastException {
+        BatchReader.readAll(paths, options, handler);
+    }
+
+    /**
+     * Reads a Cast file from the specified path asynchronously.
+     * <p>
+     * The file is read with an {@link java.nio.channels.AsynchronousFileChannel}, using several
+     * overlapping chunk reads, so no thread is blocked while waiting for the disk. Once all data
+     * has arrived, it is decoded in the {@linkplain java.util.concurrent.ForkJoinPool#commonPool()
+     * common pool}. Only opening the file happens on the calling thread. Array properties are
+     * views on the buffer the file was read into. Files larger than 2 GiB are not supported.
+     *
+     * @param path the path of the file to read
+     * @return a future that completes with the deserialized Cast, or completes exceptionally
+     * with a {@link CastException} if an error occurs while reading or parsing the Cast file
+     */
+    public static CompletableFuture<Cast> readAsync(Path path) {
+        return readAsync(path, CastReadOptions.defaults());
+    }
+
+    /**
+     * Reads a Cast file from the specified path asynchronously, using the given options.
+     * <p>
+     * The file is read as described in {@link #readAsync(Path)}.
+     *
+     * @param path    the path of the file to read
+     * @param options the options that control the reading
+     * @return a future that completes with the deserialized Cast, or completes exceptionally
+     * with a {@link CastException} if an error occurs while reading or parsing the Cast file
+     */
+    public static CompletableFuture<Cast> readAsync(Path path, CastReadOptions options) {
+        return AsyncTransfer.read(path, options);
+    }
+
+    /**
+     * Parses a Cast file from the specified input stream, reporting its contents to the handler.
+     * <p>
+     * No node tree is built; each node and property is passed to the handler as soon as it is
+     * read. Array values are passed as views on a buffer that is reused for every property, so
+     * the memory use is bounded by the largest property, regardless of the size of the file.
+     *
+     * @param in      the input stream to read from
+     * @param handler the handler that receives the events
+     * @throws CastException if an error occurs while reading or parsing the Cast file
+     */
+    public static void parse(InputStream in, CastHandler handler) throws CastException {
+        CastReader.parse(in, handler);
+    }
+
+    /**
+     * Parses a Cast file from the specified path, reporting its contents to the handler.
+     * <p>
+     * This behaves like {@link #parse(InputStream, CastHandler)}, but the file is memory-mapped,
+     * so array values are views on the mapping, and skipped nodes are never loaded.
+     *
+     * @param path    the path of the file to read
+     * @param handler the handler that receives the events
+     * @throws CastException if an error occurs while reading or parsing the Cast file
+     */
+    public static void parse(Path path, CastHandler handler) throws CastException {
+        CastReader.parse(path, handler);
     }
 
     /**
@@ -99,6 +316,7 @@ public final class Cast {
     public CastNodes.Root createRoot() {
         CastNodes.Root root = new CastNodes.Root(hasher);
         rootNodes.add(root);
+        index.add(root);
         return root;
     }
 
@@ -116,20 +334,145 @@ public final class Cast {
         CastWriter.write(this, out);
     }
 
+    /**
+     * Writes this Cast file to the specified channel.
+     * <p>
+     * Headers are collected in a small reusable buffer, while array properties are passed to the
+     * channel as they are, using a gathering write when the channel supports it. Arrays that are
+     * not stored as little-endian bytes are converted in bounded chunks. The channel is not closed.
+     *
+     * @param channel the channel to write to
+     * @throws CastException if an error occurs while writing the Cast file
+     */
+    public void write(WritableByteChannel channel) throws CastException {
+        write(channel, CastWriteOptions.defaults());
+    }
+
+    /**
+     * Writes this Cast file to the specified channel, using the given options.
+     * <p>
+     * When the channel is a {@link FileChannel}, writing starts at its current position, and the
+     * position is moved to the end of the written data afterwards. The channel is not closed.
+     *
+     * @param channel the channel to write to
+     * @param options the options that control the writing
+     * @throws CastException if an error occurs while writing the Cast file
+     * @see #write(WritableByteChannel)
+     */
+    public void write(WritableByteChannel channel, CastWriteOptions options) throws CastException {
+        CastWriter.write(this, Objects.requireNonNull(channel), Objects.requireNonNull(options));
+    }
+
+    /**
+     * Writes this Cast file to the specified path, replacing any existing file.
+     *
+     * @param path the path to write to
+     * @throws CastException if an error occurs while writing the Cast file
+     * @see #write(WritableByteChannel)
+     */
+    public void write(Path path) throws CastException {
+        write(path, CastWriteOptions.defaults());
+    }
+
+    /**
+     * Writes this Cast file to the specified path using the given options, replacing any existing file.
+     *
+     * @param path    the path to write to
+     * @param options the options that control the writing
+     * @throws CastException if an error occurs while writing the Cast file
+     * @see #write(WritableByteChannel)
+     */
+    public void write(Path path, CastWriteOptions options) throws CastException {
+        CastWriter.write(this, Objects.requireNonNull(path), Objects.requireNonNull(options));
+    }
+
+    /**
+     * Returns the exact number of bytes this Cast file takes up when written.
+     * <p>
+     * This is the 16-byte file header plus the length of every root node, including their
+     * properties and children. The lengths are cached by the nodes, so this is cheap to call
+     * repeatedly as long as the Cast is not modified.
+     *
+     * @return the size of the written Cast file in bytes
+     */
+    public long getLength() {
+        long length = 16;
+        for (CastNode rootNode : rootNodes) {
+            length += Integer.toUnsignedLong(rootNode.getLength());
+        }
+        return length;
+    }
+
+    /**
+     * Writes this Cast file into a new heap buffer of exactly the right size.
+     *
+     * @return a buffer containing the Cast file, positioned at the start
+     * @throws CastException if the Cast file does not fit in a single buffer
+     * @see #getLength()
+     */
+    public ByteBuffer toByteBuffer() throws CastException {
+        return toByteBuffer(CastBufferAllocator.heap());
+    }
+
+    /**
+     * Writes this Cast file into a buffer of exactly the right size from the given allocator.
+     * <p>
+     * The buffer is allocated once, and the file is encoded directly into it. This makes it
+     * possible to write into direct memory, or a region of shared memory, without intermediate copies.
+     *
+     * @param allocator the allocator to allocate the buffer from
+     * @return a buffer containing the Cast file, positioned at the start
+     * @throws CastException if the Cast file does not fit in a single buffer
+     * @see #getLength()
+     */
+    public ByteBuffer toByteBuffer(CastBufferAllocator allocator) throws CastException {
+        return CastWriter.toByteBuffer(this, Objects.requireNonNull(allocator));
+    }
+
+    /**
+     * Writes this Cast file into the given buffer, starting at its position.
+     * <p>
+     * The file is encoded directly into the buffer, and the position of the buffer is advanced
+     * past the written data. Nothing is written if the buffer is too small.
+     *
+     * @param buffer the buffer to write into
+     * @throws CastException                    if an error occurs while writing the Cast file
+     * @throws java.nio.BufferOverflowException if fewer than {@link #getLength()} bytes remain in the buffer
+     * @throws java.nio.ReadOnlyBufferException if the buffer is read-only
+     */
+    public void writeTo(ByteBuffer buffer) throws CastException {
+        CastWriter.write(this, Objects.requireNonNull(buffer));
+    }
+
+    /**
+     * Writes this Cast file to the specified path asynchronously, replacing the file if it exists.
+     * <p>
+     * The Cast is serialized in memory in the {@linkplain java.util.concurrent.ForkJoinPool#commonPool()
+     * common pool}, after which the file is opened and the data is written with an
+     * {@link java.nio.channels.AsynchronousFileChannel}, using several overlapping chunk writes.
+     * Nothing happens on the calling thread, so the Cast must not be modified until the returned
+     * future completes.
+     *
+     * @param path the path of the file to write
+     * @return a future that completes when all data is written, or completes exceptionally
+     * with a {@link CastException} if an error occurs while writing the Cast file
+     */
+    public CompletableFuture<Void> writeAsync(Path path) {
+        return AsyncTransfer.write(this, path);
+    }
+
     /**
      * Finds a node in this Cast by its hash value.
+     * <p>
+     * Lookups take constant time, as all nodes are indexed when the Cast is read, and the index
+     * is kept up to date when nodes are created or removed. If several nodes share a hash,
+     * the first one in depth-first order is returned.
      *
      * @param hash the hash to search for
      * @return the node with the given hash, or empty if not found
      */
     public Optional<CastNode> findNodeByHash(long hash) {
-        for (CastNode root : rootNodes) {
-            Optional<CastNode> result = findNodeByHash(root, hash);
-            if (result.isPresent()) {
-                return result;
-            }
-        }
-        return Optional.empty();
+        return Optional.ofNullable(index.get(hash));
     }
 
     /**
@@ -146,19 +489,6 @@ public final class Cast {
             .map(type::cast);
     }
 
-    private Optional<CastNode> findNodeByHash(CastNode node, long hash) {
-        if (node.getHash() == hash) {
-            return Optional.of(node);
-        }
-        for (CastNode child : node.children) {
-            Optional<CastNode> result = findNodeByHash(child, hash);
-            if (result.isPresent()) {
-                return result;
-            }
-        }
-        return Optional.empty();
-    }
-
     @Override
     public boolean equals(Object o) {
         return this == o || o instanceof Cast
@@ -0,0 +1,37 @@
+package be.twofold.tinycast;
+
+import java.nio.file.Path;
+
+/**
+ * Receives the results of reading a batch of Cast files, in the order they complete.
+ * <p>
+ * All methods are called on the thread that started the batch, one at a time, so implementations
+ * don't need to be thread-safe. While a method runs, the bytes of its file still count as in
+ * flight, so a slow handler throttles the reading of further files.
+ *
+ * @see Cast#readAll(java.util.Collection, CastReadOptions, CastBatchHandler)
+ */
+public interface CastBatchHandler {
+    /**
+     * Called when a file was read successfully.
+     *
+     * @param path the path of the file
+     * @param cast the Cast that was read
+     * @throws CastException to abort the batch
+     */
+    void read(Path path, Cast cast) throws CastException;
+
+    /**
+     * Called when a file could not be read.
+     * <p>
+     * The default implementation rethrows the exception, which aborts the batch. Override it to
+     * continue with the remaining files instead.
+     *
+     * @param path      the path of the file
+     * @param exception the exception that occurred while reading the file
+     * @throws CastException to abort the batch
+     */
+    default void failed(Path path, CastException exception) throws CastException {
+        throw exception;
+    }
+}
@@ -0,0 +1,85 @@
+package be.twofold.tinycast;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Allocates the memory that decoded array properties are stored in.
+ * <p>
+ * By default, arrays read from streams are stored on the heap, and arrays read from files or
+ * buffers are views of the source without any copying. Setting an allocator through
+ * {@link CastReadOptions#withAllocator(CastBufferAllocator)} copies every array exactly once,
+ * into memory of the allocator's choosing. For example, {@link #direct()} makes vertex and face
+ * buffers land in off-heap memory that is ready for upload.
+ * <p>
+ * Allocators can be called from multiple threads when reading in parallel, so implementations
+ * have to be thread-safe.
+ *
+ * @see CastReadOptions#withAllocator(CastBufferAllocator)
+ */
+@FunctionalInterface
+public interface CastBufferAllocator {
+    /**
+     * Allocates a buffer with the given capacity.
+     * <p>
+     * The returned buffer must have a position of zero and a limit of at least {@code capacity}.
+     * Its contents are overwritten, and its byte order is changed to little-endian.
+     *
+     * @param capacity the number of bytes needed
+     * @return the allocated buffer
+     */
+    ByteBuffer allocate(int capacity);
+
+    /**
+     * Makes all memory handed out by this allocator available for reuse.
+     * <p>
+     * Buffers that were allocated before the reset must no longer be used afterward. The default
+     * implementation does nothing, which is correct for allocators that don't reuse memory.
+     */
+    default void reset() {
+    }
+
+    /**
+     * Returns an allocator that allocates a new heap buffer for every array.
+     *
+     * @return the heap allocator
+     */
+    static CastBufferAllocator heap() {
+        return ByteBuffer::allocate;
+    }
+
+    /**
+     * Returns an allocator that allocates a new direct buffer for every array.
+     *
+     * @return the direct allocator
+     */
+    static CastBufferAllocator direct() {
+        return ByteBuffer::allocateDirect;
+    }
+
+    /**
+     * Returns an allocator that recycles direct buffers.
+     * <p>
+     * Buffers are handed out in power-of-two size classes. After a {@link #reset()}, all buffers
+     * that were handed out are reused for new allocations, so repeatedly reading files of a
+     * similar shape doesn't allocate any new memory.
+     *
+     * @return a new pooled allocator
+     */
+    static CastBufferAllocator pooled() {
+        return new BufferAllocators.Pooled();
+    }
+
+    /**
+     * Returns an allocator that hands out consecutive slices of the given buffer.
+     * <p>
+     * Allocations are aligned to eight bytes. A {@link #reset()} starts handing out slices from
+     * the start of the arena again. When the arena runs out of space, allocation fails with an
+     * {@link IllegalStateException}.
+     *
+     * @param arena the buffer to allocate from, from its position to its limit
+     * @return a new arena allocator
+     */
+    static CastBufferAllocator arena(ByteBuffer arena) {
+        return new BufferAllocators.Arena(arena);
+    }
+}
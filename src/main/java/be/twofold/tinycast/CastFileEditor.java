@@ -0,0 +1,305 @@
+package be.twofold.tinycast;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * Makes small changes to a Cast file on disk, without reading and writing the whole file.
+ * <p>
+ * Two kinds of edits are supported, which both write only the bytes that change:
+ * <ul>
+ *   <li>{@linkplain #setProperty(long, String, Object) Overwriting} the value of a property with
+ *       a value of the same size, like a hash, a number or a string of the same length.</li>
+ *   <li>{@linkplain #appendRoot(CastNodes.Root) Appending} a root node to the end of the file, after which
+ *       only the root node count in the file header is updated.</li>
+ * </ul>
+ * <pre>{@code
+ * try (CastFileEditor editor = CastFileEditor.open(path)) {
+ *     editor.setProperty(materialHash, "n", "stone");
+ *     editor.appendRoot(root);
+ * }
+ * }</pre>
+ * Nodes are located through a {@link CastIndex}, which is built on first use.
+ * The Cast file must start at the beginning of the file.
+ */
+public final class CastFileEditor implements Closeable {
+    private static final int NODE_HEADER_SIZE = 24;
+    private static final int ROOT_NODE_COUNT_OFFSET = 8;
+
+    private final FileChannel channel;
+    private final boolean closeChannel;
+    private CastIndex index;
+    private MappedBinaryReader source;
+
+    private CastFileEditor(FileChannel channel, boolean closeChannel) throws IOException {
+        this.channel = Objects.requireNonNull(channel);
+        this.closeChannel = closeChannel;
+        new CastReader(new MappedBinaryReader(channel).duplicate(0), CastReadOptions.defaults(), null).readHeader();
+    }
+
+    /**
+     * Opens the Cast file at the specified path for editing.
+     *
+     * @param path the path of the Cast file
+     * @return the opened editor
+     * @throws CastException if the file cannot be opened, or is not a valid Cast file
+     */
+    public static CastFileEditor open(Path path) throws CastException {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new CastFileEditor(channel, true);
+        } catch (IOException e) {
+            closeQuietly(channel, e);
+            throw e instanceof CastException
+                ? (CastException) e
+                : new CastException("Error reading cast file", e);
+        }
+    }
+
+    /**
+     * Opens the Cast file in the specified channel for editing.
+     * <p>
+     * The channel must be readable and writable, and is not closed when the editor is closed.
+     * All edits use positional reads and writes.
+     *
+     * @param channel the file channel to edit
+     * @return the opened editor
+     * @throws CastException if the channel does not contain a valid Cast file
+     */
+    public static CastFileEditor open(FileChannel channel) throws CastException {
+        try {
+            return new CastFileEditor(channel, false);
+        } catch (CastException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CastException("Error reading cast file", e);
+        }
+    }
+
+    /**
+     * Returns the index of the file in its current state.
+     * <p>
+     * The index is built on first use, and built again after a root node has been appended.
+     *
+     * @return the index
+     * @throws CastException if an error occurs while reading the file
+     */
+    public CastIndex getIndex() throws CastException {
+        if (index == null) {
+            try {
+                // The index is built from the current position of the channel
+                long position = channel.position();
+                channel.position(0);
+                try {
+                    index = CastIndex.build(channel);
+                } finally {
+                    channel.position(position);
+                }
+                source = new MappedBinaryReader(channel);
+            } catch (CastException e) {
+                throw e;
+            } catch (IOException e) {
+                throw new CastException("Error reading cast file", e);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Overwrites the value of a property in place.
+     * <p>
+     * The new value must have the Java type of the current property type, see {@link CastProperty},
+     * and must encode to the same number of bytes as the current value, so the type and array
+     * length of the property are kept. Only the bytes of the value are written.
+     *
+     * @param nodeHash the hash of the node that contains the property
+     * @param name     the name of the property
+     * @param value    the new value, see {@link CastProperty#getValue()}
+     * @return {@code true} if the property was overwritten, {@code false} if either
+     * the node or the property does not exist
+     * @throws CastException            if an error occurs while reading or writing the file
+     * @throws IllegalArgumentException if the new value has a different type or size than the current value
+     */
+    public boolean setProperty(long nodeHash, String name, Object value) throws CastException {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(value);
+
+        CastIndex nodes = getIndex();
+        int position = nodes.indexOf(nodeHash);
+        if (position < 0) {
+            return false;
+        }
+
+        try {
+            MappedBinaryReader reader = source.duplicate(nodes.getOffset(position) + NODE_HEADER_SIZE);
+            CastReader castReader = new CastReader(reader, CastReadOptions.defaults(), null);
+            for (int i = 0; i < nodes.getPropertyCount(position); i++) {
+                long start = reader.position();
+                CastPropertyID identifier = castReader.readPropertyID();
+                int nameSize = Short.toUnsignedInt(reader.readShort());
+                int arrayLength = reader.readInt();
+                PropertyKey key = castReader.readPropertyKey(nodes.getIdentifier(position), nameSize);
+                long valueOffset = reader.position();
+                if (identifier == CastPropertyID.STRING) {
+                    reader.skipCString();
+                } else {
+                    long nodeEnd = nodes.getOffset(position) + nodes.getSize(position);
+                    reader.skip(CastReader.arraySize(identifier, arrayLength, nodeEnd - reader.position()));
+                }
+
+                if (key.getName().equals(name)) {
+                    checkType(identifier, key, value);
+                    CastProperty property = new CastProperty(identifier, name, value);
+                    long length = reader.position() - start;
+                    if (property.getLength() != length) {
+                        throw new IllegalArgumentException("Property '" + name + "' must keep its size of " +
+                            (length - (valueOffset - start)) + " bytes");
+                    }
+
+                    BinaryWriter writer = new BinaryWriter(new PositionalChannel(channel, valueOffset));
+                    new CastWriter(writer).writeValue(property);
+                    writer.flush();
+                    return true;
+                }
+            }
+            return false;
+        } catch (CastException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CastException("Error writing cast file", e);
+        }
+    }
+
+    // The writer casts the value based on the type, so a value of another type would either fail
+    // halfway through, or for buffers of the same size silently write the wrong bits
+    private static void checkType(CastPropertyID identifier, PropertyKey key, Object value) {
+        Class<?> expected = key.isArray() ? arrayType(identifier) : singleType(identifier);
+        if (!expected.isInstance(value)) {
+            throw new IllegalArgumentException("Property '" + key.getName() + "' of type " + identifier +
+                " needs a " + expected.getSimpleName() + ", but got a " + value.getClass().getSimpleName());
+        }
+    }
+
+    private static Class<?> singleType(CastPropertyID identifier) {
+        switch (identifier) {
+            case BYTE:
+                return Byte.class;
+            case SHORT:
+                return Short.class;
+            case INTEGER_32:
+                return Integer.class;
+            case INTEGER_64:
+                return Long.class;
+            case FLOAT:
+                return Float.class;
+            case DOUBLE:
+                return Double.class;
+            case STRING:
+                return String.class;
+            case VECTOR_2:
+                return Vec2.class;
+            case VECTOR_3:
+                return Vec3.class;
+            case VECTOR_4:
+                return Vec4.class;
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    private static Class<?> arrayType(CastPropertyID identifier) {
+        switch (identifier) {
+            case BYTE:
+                return ByteBuffer.class;
+            case SHORT:
+                return ShortBuffer.class;
+            case INTEGER_32:
+                return IntBuffer.class;
+            case INTEGER_64:
+                return LongBuffer.class;
+            case FLOAT:
+            case VECTOR_2:
+            case VECTOR_3:
+            case VECTOR_4:
+                return FloatBuffer.class;
+            case DOUBLE:
+                return DoubleBuffer.class;
+            default:
+                // Strings have no array form
+                return singleType(identifier);
+        }
+    }
+
+    /**
+     * Appends a root node, including all its children, to the end of the file.
+     * <p>
+     * The node is written after the existing data, and the root node count in the file header is
+     * updated afterwards. Nothing else in the file is touched. The hashes of the new nodes should
+     * not collide with the hashes of the existing nodes.
+     *
+     * @param root the root node to append
+     * @throws CastException if an error occurs while writing the file
+     */
+    public void appendRoot(CastNodes.Root root) throws CastException {
+        Objects.requireNonNull(root);
+        try {
+            ByteBuffer count = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(count, ROOT_NODE_COUNT_OFFSET);
+
+            BinaryWriter writer = new BinaryWriter(new PositionalChannel(channel, channel.size()));
+            new CastWriter(writer).writeNode(root);
+            writer.flush();
+
+            int rootNodeCount = count.flip().getInt();
+            count.clear().putInt(rootNodeCount + 1).flip();
+            while (count.hasRemaining()) {
+                channel.write(count, ROOT_NODE_COUNT_OFFSET + count.position());
+            }
+
+            index = null;
+            source = null;
+        } catch (CastException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CastException("Error writing cast file", e);
+        }
+    }
+
+    private void readFully(ByteBuffer dst, long position) throws IOException {
+        while (dst.hasRemaining()) {
+            if (channel.read(dst, position + dst.position()) < 0) {
+                throw new CastException("Unexpected end of file at " + (position + dst.position()));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closeChannel) {
+            channel.close();
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel, IOException cause) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package be.twofold.tinycast;
+
+/**
+ * Receives the contents of a Cast file as a sequence of events, without building a node tree.
+ * <p>
+ * Events are fired in file order. Every accepted node produces a {@link #startNode} event,
+ * followed by a {@link #property} event for each of its properties, the events of its children,
+ * and finally an {@link #endNode()} event. All methods have empty default implementations, so
+ * only the events of interest need to be implemented.
+ * <p>
+ * Array values are passed as transient buffer views, which are only valid for the duration of
+ * the {@link #property} call. Copy any data that is needed afterwards.
+ *
+ * @see Cast#parse(java.io.InputStream, CastHandler)
+ * @see Cast#parse(java.nio.file.Path, CastHandler)
+ */
+public interface CastHandler {
+    /**
+     * Called when a node starts.
+     * <p>
+     * Returning {@code false} skips the node, including its properties and children, without
+     * decoding it. No {@link #endNode()} event is fired for a skipped node.
+     *
+     * @param identifier    the type of the node
+     * @param hash          the hash of the node
+     * @param propertyCount the number of properties of the node
+     * @param childCount    the number of children of the node
+     * @return {@code true} to receive the contents of the node, {@code false} to skip it
+     */
+    default boolean startNode(CastNodeID identifier, long hash, int propertyCount, int childCount) {
+        return true;
+    }
+
+    /**
+     * Called for every property of the current node.
+     *
+     * @param name        the name of the property
+     * @param identifier  the type of the property
+     * @param arrayLength the number of values in the property
+     * @param value       the value of the property, see {@link CastProperty#getValue()} for the
+     *                    possible types. Buffers are only valid during this call.
+     */
+    default void property(String name, CastPropertyID identifier, int arrayLength, Object value) {
+    }
+
+    /**
+     * Called when all properties and children of the current node have been reported.
+     */
+    default void endNode() {
+    }
+}
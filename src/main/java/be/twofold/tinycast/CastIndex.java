@@ -0,0 +1,448 @@
+package be.twofold.tinycast;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A table of contents of a Cast file, listing every node without decoding any data.
+ * <p>
+ * The index is built by walking the node and property headers of a file. Property values are
+ * skipped, so building an index touches only a fraction of the file. For every node, in file
+ * order, the index records its type, hash, parent, file offset, size, property count and child
+ * count. Nodes are referred to by their position in the index, and a parent always precedes its
+ * children.
+ * <p>
+ * An index can be saved to a compact sidecar file, and loaded again without touching the Cast file.
+ *
+ * @see IndexedCastFile
+ */
+public final class CastIndex {
+    private static final int MAGIC = 0x78646963; // "cidx"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 20;
+    private static final CastNodeID[] IDENTIFIERS = CastNodeID.values();
+
+    private final long sourceLength;
+    private final int size;
+    private final byte[] identifiers;
+    private final long[] hashes;
+    private final int[] parents;
+    private final long[] offsets;
+    private final int[] sizes;
+    private final int[] propertyCounts;
+    private final int[] childCounts;
+    private final long[] sortedHashes;
+    private final int[] sortedIndices;
+
+    private CastIndex(long sourceLength, int size, byte[] identifiers, long[] hashes, int[] parents,
+                      long[] offsets, int[] sizes, int[] propertyCounts, int[] childCounts) {
+        this.sourceLength = sourceLength;
+        this.size = size;
+        this.identifiers = identifiers;
+        this.hashes = hashes;
+        this.parents = parents;
+        this.offsets = offsets;
+        this.sizes = sizes;
+        this.propertyCounts = propertyCounts;
+        this.childCounts = childCounts;
+
+        // Sorted eagerly, so the index is immutable and can be shared between threads
+        this.sortedHashes = new long[size];
+        this.sortedIndices = new int[size];
+        sortByHash(hashes, size, sortedHashes, sortedIndices);
+    }
+
+    /**
+     * Builds an index of the Cast file at the specified path.
+     *
+     * @param path the path of the Cast file
+     * @return the index of the file
+     * @throws CastException if an error occurs while reading or parsing the Cast file
+     */
+    public static CastIndex build(Path path) throws CastException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return build(channel);
+        } catch (CastException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CastException("Error reading cast file", e);
+        }
+    }
+
+    /**
+     * Builds an index of the Cast file in the specified channel, starting at its current position.
+     * <p>
+     * The channel is not closed, and its position is not modified. The offsets in the index are
+     * absolute positions in the channel.
+     *
+     * @param channel the file channel to read from
+     * @return the index of the file
+     * @throws CastException if an error occurs while reading or parsing the Cast file
+     */
+    public static CastIndex build(FileChannel channel) throws CastException {
+        try {
+            Builder builder = new Builder(new MappedBinaryReader(channel));
+            int rootNodeCount = builder.castReader.readHeader();
+            for (int i = 0; i < rootNodeCount; i++) {
+                builder.readNode(-1);
+            }
+            return builder.build(channel.size());
+        } catch (CastException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CastException("Error reading cast file", e);
+        }
+    }
+
+    /**
+     * Loads an index from a sidecar file that was written by {@link #save(Path)}.
+     *
+     * @param path the path of the sidecar file
+     * @return the loaded index
+     * @throws CastException if the sidecar file cannot be read or is invalid
+     */
+    public static CastIndex load(Path path) throws CastException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+                throw new CastException("Invalid index size: " + length);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) length).order(ByteOrder.LITTLE_ENDIAN);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new CastException("Unexpected end of index");
+                }
+            }
+            return load(buffer.flip());
+        } catch (CastException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CastException("Error reading index file", e);
+        }
+    }
+
+    private static CastIndex load(ByteBuffer buffer) throws CastException {
+        int magic = buffer.getInt();
+        if (magic != MAGIC) {
+            throw new CastException("Invalid magic number: 0x" + Integer.toHexString(magic));
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new CastException("Invalid version: " + version);
+        }
+        long sourceLength = buffer.getLong();
+        int size = buffer.getInt();
+        if (size < 0 || (long) size * bytesPerNode() != buffer.remaining()) {
+            throw new CastException("Invalid node count: " + size);
+        }
+
+        byte[] identifiers = new byte[size];
+        long[] hashes = new long[size];
+        int[] parents = new int[size];
+        long[] offsets = new long[size];
+        int[] sizes = new int[size];
+        int[] propertyCounts = new int[size];
+        int[] childCounts = new int[size];
+
+        buffer.get(identifiers);
+        buffer.asLongBuffer().get(hashes);
+        buffer.position(buffer.position() + size * Long.BYTES);
+        buffer.asIntBuffer().get(parents);
+        buffer.position(buffer.position() + size * Integer.BYTES);
+        buffer.asLongBuffer().get(offsets);
+        buffer.position(buffer.position() + size * Long.BYTES);
+        buffer.asIntBuffer().get(sizes);
+        buffer.position(buffer.position() + size * Integer.BYTES);
+        buffer.asIntBuffer().get(propertyCounts);
+        buffer.position(buffer.position() + size * Integer.BYTES);
+        buffer.asIntBuffer().get(childCounts);
+
+        for (byte identifier : identifiers) {
+            if (Byte.toUnsignedInt(identifier) >= IDENTIFIERS.length) {
+                throw new CastException("Invalid node identifier: " + Byte.toUnsignedInt(identifier));
+            }
+        }
+        return new CastIndex(sourceLength, size, identifiers, hashes, parents, offsets, sizes, propertyCounts, childCounts);
+    }
+
+    /**
+     * Saves this index to a sidecar file, replacing it if it exists.
+     *
+     * @param path the path of the sidecar file
+     * @throws CastException if the sidecar file cannot be written
+     */
+    public void save(Path path) throws CastException {
+        ByteBuffer buffer = ByteBuffer
+            .allocate(Math.toIntExact(HEADER_SIZE + (long) size * bytesPerNode()))
+            .order(ByteOrder.LITTLE_ENDIAN)
+            .putInt(MAGIC)
+            .putInt(VERSION)
+            .putLong(sourceLength)
+            .putInt(size)
+            .put(identifiers, 0, size);
+        buffer.asLongBuffer().put(hashes, 0, size);
+        buffer.position(buffer.position() + size * Long.BYTES);
+        buffer.asIntBuffer().put(parents, 0, size);
+        buffer.position(buffer.position() + size * Integer.BYTES);
+        buffer.asLongBuffer().put(offsets, 0, size);
+        buffer.position(buffer.position() + size * Long.BYTES);
+        buffer.asIntBuffer().put(sizes, 0, size);
+        buffer.position(buffer.position() + size * Integer.BYTES);
+        buffer.asIntBuffer().put(propertyCounts, 0, size);
+        buffer.position(buffer.position() + size * Integer.BYTES);
+        buffer.asIntBuffer().put(childCounts, 0, size);
+        buffer.rewind();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new CastException("Error writing index file", e);
+        }
+    }
+
+    private static int bytesPerNode() {
+        return Byte.BYTES + Long.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES * 3;
+    }
+
+    /**
+     * Returns the length of the file this index was built from, which can be used to detect
+     * whether a sidecar file is stale.
+     *
+     * @return the length of the indexed file in bytes
+     */
+    public long getSourceLength() {
+        return sourceLength;
+    }
+
+    /**
+     * Returns the number of nodes in this index.
+     *
+     * @return the number of nodes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the type of the node at the given index.
+     *
+     * @param index the index of the node
+     * @return the type of the node
+     */
+    public CastNodeID getIdentifier(int index) {
+        return IDENTIFIERS[identifiers[Objects.checkIndex(index, size)]];
+    }
+
+    /**
+     * Returns the hash of the node at the given index.
+     *
+     * @param index the index of the node
+     * @return the hash of the node
+     */
+    public long getHash(int index) {
+        return hashes[Objects.checkIndex(index, size)];
+    }
+
+    /**
+     * Returns the index of the parent of the node at the given index.
+     *
+     * @param index the index of the node
+     * @return the index of the parent, or {@code -1} for root nodes
+     */
+    public int getParent(int index) {
+        return parents[Objects.checkIndex(index, size)];
+    }
+
+    /**
+     * Returns the file offset of the header of the node at the given index.
+     *
+     * @param index the index of the node
+     * @return the offset of the node in the file
+     */
+    public long getOffset(int index) {
+        return offsets[Objects.checkIndex(index, size)];
+    }
+
+    /**
+     * Returns the size in bytes of the node at the given index, including all its children.
+     *
+     * @param index the index of the node
+     * @return the size of the node
+     */
+    public long getSize(int index) {
+        return Integer.toUnsignedLong(sizes[Objects.checkIndex(index, size)]);
+    }
+
+    /**
+     * Returns the number of properties of the node at the given index.
+     *
+     * @param index the index of the node
+     * @return the number of properties
+     */
+    public int getPropertyCount(int index) {
+        return propertyCounts[Objects.checkIndex(index, size)];
+    }
+
+    /**
+     * Returns the number of children of the node at the given index.
+     *
+     * @param index the index of the node
+     * @return the number of children
+     */
+    public int getChildCount(int index) {
+        return childCounts[Objects.checkIndex(index, size)];
+    }
+
+    /**
+     * Returns the index of the first node with the given hash.
+     *
+     * @param hash the hash to search for
+     * @return the index of the node, or {@code -1} if no node has the hash
+     */
+    public int indexOf(long hash) {
+        int position = Arrays.binarySearch(sortedHashes, hash);
+        if (position < 0) {
+            return -1;
+        }
+        // The sort is stable, so walk back to the first occurrence in file order
+        while (position > 0 && sortedHashes[position - 1] == hash) {
+            position--;
+        }
+        return sortedIndices[position];
+    }
+
+    // A stable radix sort on the bytes of the hashes, carrying the indices along in a parallel array.
+    // The sign bit is flipped on the last pass, so the result is in signed order for binarySearch.
+    private static void sortByHash(long[] hashes, int size, long[] sortedHashes, int[] sortedIndices) {
+        long[] keys = Arrays.copyOf(hashes, size);
+        int[] indices = new int[size];
+        for (int i = 0; i < size; i++) {
+            indices[i] = i;
+        }
+
+        long[] keyBuffer = new long[size];
+        int[] indexBuffer = new int[size];
+        int[] counts = new int[257];
+        for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+            int flip = shift == Long.SIZE - Byte.SIZE ? 0x80 : 0;
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < size; i++) {
+                counts[((int) (keys[i] >>> shift) & 0xFF ^ flip) + 1]++;
+            }
+            for (int i = 0; i < 256; i++) {
+                counts[i + 1] += counts[i];
+            }
+            for (int i = 0; i < size; i++) {
+                int target = counts[(int) (keys[i] >>> shift) & 0xFF ^ flip]++;
+                keyBuffer[target] = keys[i];
+                indexBuffer[target] = indices[i];
+            }
+
+            long[] swapKeys = keys;
+            keys = keyBuffer;
+            keyBuffer = swapKeys;
+            int[] swapIndices = indices;
+            indices = indexBuffer;
+            indexBuffer = swapIndices;
+        }
+
+        System.arraycopy(keys, 0, sortedHashes, 0, size);
+        System.arraycopy(indices, 0, sortedIndices, 0, size);
+    }
+
+    @Override
+    public String toString() {
+        return "CastIndex(" + size + " nodes)";
+    }
+
+    private static final class Builder {
+        private final BinaryReader reader;
+        private final CastReader castReader;
+        private int size;
+        private byte[] identifiers = new byte[64];
+        private long[] hashes = new long[64];
+        private int[] parents = new int[64];
+        private long[] offsets = new long[64];
+        private int[] sizes = new int[64];
+        private int[] propertyCounts = new int[64];
+        private int[] childCounts = new int[64];
+
+        private Builder(BinaryReader reader) {
+            this.reader = reader;
+            this.castReader = new CastReader(reader, CastReadOptions.defaults(), null);
+        }
+
+        private void readNode(int parent) throws IOException {
+            long offset = reader.position();
+            CastNodeID identifier = castReader.readNodeID();
+            int nodeSize = reader.readInt();
+            long nodeHash = reader.readLong();
+            int propertyCount = reader.readInt();
+            int childCount = reader.readInt();
+
+            if (size == hashes.length) {
+                grow();
+            }
+            int index = size++;
+            identifiers[index] = (byte) identifier.ordinal();
+            hashes[index] = nodeHash;
+            parents[index] = parent;
+            offsets[index] = offset;
+            sizes[index] = nodeSize;
+            propertyCounts[index] = propertyCount;
+            childCounts[index] = childCount;
+
+            long nodeEnd = offset + Integer.toUnsignedLong(nodeSize);
+            for (int i = 0; i < propertyCount; i++) {
+                skipProperty(identifier, nodeEnd);
+            }
+            for (int i = 0; i < childCount; i++) {
+                readNode(index);
+            }
+        }
+
+        private void skipProperty(CastNodeID nodeIdentifier, long nodeEnd) throws IOException {
+            CastPropertyID identifier = castReader.readPropertyID();
+            int nameSize = Short.toUnsignedInt(reader.readShort());
+            int arrayLength = reader.readInt();
+
+            // Known names resolve to shared keys, so this doesn't allocate for well-formed files
+            castReader.readPropertyKey(nodeIdentifier, nameSize);
+            if (identifier == CastPropertyID.STRING) {
+                reader.skipCString();
+            } else {
+                reader.skip(CastReader.arraySize(identifier, arrayLength, nodeEnd - reader.position()));
+            }
+        }
+
+        private void grow() {
+            int newLength = hashes.length * 2;
+            identifiers = Arrays.copyOf(identifiers, newLength);
+            hashes = Arrays.copyOf(hashes, newLength);
+            parents = Arrays.copyOf(parents, newLength);
+            offsets = Arrays.copyOf(offsets, newLength);
+            sizes = Arrays.copyOf(sizes, newLength);
+            propertyCounts = Arrays.copyOf(propertyCounts, newLength);
+            childCounts = Arrays.copyOf(childCounts, newLength);
+        }
+
+        private CastIndex build(long sourceLength) {
+            return new CastIndex(sourceLength, size,
+                Arrays.copyOf(identifiers, size),
+                Arrays.copyOf(hashes, size),
+                Arrays.copyOf(parents, size),
+                Arrays.copyOf(offsets, size),
+                Arrays.copyOf(sizes, size),
+                Arrays.copyOf(propertyCounts, size),
+                Arrays.copyOf(childCounts, size));
+        }
+    }
+}
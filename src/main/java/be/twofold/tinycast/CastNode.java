@@ -5,14 +5,14 @@ import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 /**
  * Base class for all Cast nodes in the Cast file format.
@@ -31,6 +31,12 @@ import java.util.stream.Collectors;
  * <p>
  * Nodes follow a stack layout (FILO order) in the Cast file format, where properties
  * always precede a node's children in the serialized form.
+ * <p>
+ * The typed child accessors, like {@link CastNodes.Model#getMeshes()}, return read-only views
+ * that reflect later changes to the children, not snapshots. Removing children while iterating
+ * such a view throws a {@link java.util.ConcurrentModificationException}, so iterate over a copy
+ * instead, for example {@code List.copyOf(model.getMeshes())}. Nodes can be read from multiple
+ * threads at the same time, but must not be modified while other threads read them.
  *
  * @see CastNodeID
  * @see CastProperty
@@ -41,14 +47,20 @@ public abstract class CastNode {
     final AtomicLong hasher;
     final Map<String, CastProperty> properties;
     final List<CastNode> children;
+    CastNode parent;
+    NodeIndex index;
+    private volatile Map<CastNodeID, Bucket> buckets;
     private int cachedLength = -1;
 
     CastNode(CastNodeID identifier, long hash, AtomicLong hasher, Map<String, CastProperty> properties, List<CastNode> children) {
         this.identifier = Objects.requireNonNull(identifier);
         this.hash = hash;
         this.hasher = hasher;
-        this.properties = new LinkedHashMap<>(properties);
+        this.properties = PropertyMap.copyOf(identifier, properties);
         this.children = new ArrayList<>(children);
+        for (CastNode child : this.children) {
+            child.parent = this;
+        }
     }
 
     CastNode(CastNodeID identifier, AtomicLong hasher) {
@@ -82,6 +94,8 @@ public abstract class CastNode {
         return hash;
     }
 
+    // A cached length implies cached lengths for all descendants, so an edit only has to
+    // adjust the ancestors up to the first one that has no cached length yet.
     int getLength() {
         if (cachedLength == -1) {
             int result = 24;
@@ -96,18 +110,39 @@ public abstract class CastNode {
         return cachedLength;
     }
 
-    <T extends CastNode> Optional<T> getChildOfType(Class<T> type) {
-        return children.stream()
-            .filter(type::isInstance)
-            .map(type::cast)
-            .findFirst();
+    private void adjustLength(int delta) {
+        for (CastNode node = this; node != null && node.cachedLength != -1; node = node.parent) {
+            node.cachedLength += delta;
+        }
+    }
+
+    <T extends CastNode> Optional<T> getChildOfType(CastNodeID identifier, Class<T> type) {
+        List<T> result = getChildrenOfType(identifier, type);
+        return result.isEmpty() ? Optional.empty() : Optional.of(result.get(0));
+    }
+
+    // Returns a read-only view, which follows later changes to the children.
+    // The buckets are built in full before they are published, so concurrent reads of a tree that
+    // isn't modified stay safe. Threads that race to build them each build an identical copy.
+    @SuppressWarnings("unchecked")
+    <T extends CastNode> List<T> getChildrenOfType(CastNodeID identifier, Class<T> type) {
+        Map<CastNodeID, Bucket> result = buckets;
+        if (result == null) {
+            if (children.isEmpty()) {
+                return List.of();
+            }
+            result = new EnumMap<>(CastNodeID.class);
+            for (CastNode child : children) {
+                bucket(result, child.getIdentifier()).nodes.add(child);
+            }
+            buckets = result;
+        }
+        Bucket bucket = result.get(identifier);
+        return bucket != null ? (List<T>) bucket.view : List.of();
     }
 
-    <T extends CastNode> List<T> getChildrenOfType(Class<T> type) {
-        return children.stream()
-            .filter(type::isInstance)
-            .map(type::cast)
-            .collect(Collectors.toUnmodifiableList());
+    private static Bucket bucket(Map<CastNodeID, Bucket> buckets, CastNodeID identifier) {
+        return buckets.computeIfAbsent(identifier, __ -> new Bucket());
     }
 
     <T> Optional<T> getProperty(String name, Function<Object, ? extends T> mapper) {
@@ -132,7 +167,17 @@ public abstract class CastNode {
 
     <T extends CastNode> T createChild(T child) {
         children.add(child);
-        cachedLength = -1;
+        child.parent = this;
+        Map<CastNodeID, Bucket> result = buckets;
+        if (result != null) {
+            bucket(result, child.getIdentifier()).nodes.add(child);
+        }
+        if (cachedLength != -1) {
+            adjustLength(child.getLength());
+        }
+        if (index != null) {
+            index.addChild(child);
+        }
         return child;
     }
 
@@ -144,15 +189,28 @@ public abstract class CastNode {
      */
     public boolean removeChild(CastNode child) {
         if (children.remove(child)) {
-            cachedLength = -1;
+            Map<CastNodeID, Bucket> result = buckets;
+            if (result != null) {
+                result.get(child.getIdentifier()).nodes.remove(child);
+            }
+            if (cachedLength != -1) {
+                adjustLength(-child.getLength());
+            }
+            child.parent = null;
+            if (index != null) {
+                index.remove(child);
+            }
             return true;
         }
         return false;
     }
 
     void createProperty(CastPropertyID identifier, String name, Object value) {
-        properties.put(name, new CastProperty(identifier, name, value));
-        cachedLength = -1;
+        CastProperty property = new CastProperty(identifier, name, value);
+        CastProperty previous = properties.put(name, property);
+        if (cachedLength != -1) {
+            adjustLength(property.getLength() - (previous != null ? previous.getLength() : 0));
+        }
     }
 
     void createIntProperty(String name, int value) {
@@ -167,7 +225,14 @@ public abstract class CastNode {
     }
 
     void createIntBufferProperty(String name, Buffer value) {
-        Buffer buffer = Buffers.shrink(value);
+        createShrunkBufferProperty(name, Buffers.shrink(value));
+    }
+
+    void createIntBufferProperty(String name, Buffer value, int maxValue) {
+        createShrunkBufferProperty(name, Buffers.shrink(value, Integer.toUnsignedLong(maxValue)));
+    }
+
+    private void createShrunkBufferProperty(String name, Buffer buffer) {
         if (buffer instanceof ByteBuffer) {
             createProperty(CastPropertyID.BYTE, name, buffer);
         } else if (buffer instanceof ShortBuffer) {
@@ -191,6 +256,12 @@ public abstract class CastNode {
         }
     }
 
+    // The children of one type, in the same order as in the list of all children
+    private static final class Bucket {
+        private final List<CastNode> nodes = new ArrayList<>();
+        private final List<CastNode> view = Collections.unmodifiableList(nodes);
+    }
+
     @Override
     public final boolean equals(Object obj) {
         if (!(obj instanceof CastNode)) {
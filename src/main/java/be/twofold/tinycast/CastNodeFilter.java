@@ -0,0 +1,38 @@
+package be.twofold.tinycast;
+
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Decides which nodes are decoded while reading a Cast file.
+ * <p>
+ * The filter is evaluated on the node header, before any of the node's properties are read.
+ * When a node is rejected, its entire subtree is skipped using the node size from the header,
+ * without decoding any of it. Note that a filter has to accept all ancestors of the nodes it
+ * is interested in, including the {@link CastNodeID#ROOT root} nodes.
+ *
+ * @see CastReadOptions#withNodeFilter(CastNodeFilter)
+ */
+@FunctionalInterface
+public interface CastNodeFilter {
+    /**
+     * Returns whether the node with the given header should be decoded.
+     *
+     * @param identifier the type of the node
+     * @param hash       the hash of the node
+     * @param depth      the depth of the node, where root nodes have depth {@code 0}
+     * @return {@code true} to decode the node, {@code false} to skip it and all of its children
+     */
+    boolean accept(CastNodeID identifier, long hash, int depth);
+
+    /**
+     * Returns a filter that only looks at the type of the node.
+     *
+     * @param predicate the predicate to test the node type with
+     * @return a filter that accepts a node if the predicate accepts its type
+     */
+    static CastNodeFilter of(Predicate<CastNodeID> predicate) {
+        Objects.requireNonNull(predicate);
+        return (identifier, hash, depth) -> predicate.test(identifier);
+    }
+}
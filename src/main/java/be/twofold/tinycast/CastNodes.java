@@ -313,12 +313,12 @@ public final class CastNodes {
         }
 
         /**
-         * Returns the children of type {@link Model}.
+         * Returns a read-only view of the children of type {@link Model}.
          *
          * @return The list of Models
          */
         public List<Model> getModels() {
-            return getChildrenOfType(Model.class);
+            return getChildrenOfType(CastNodeID.MODEL, Model.class);
         }
 
         /**
@@ -331,12 +331,12 @@ public final class CastNodes {
         }
 
         /**
-         * Returns the children of type {@link Animation}.
+         * Returns a read-only view of the children of type {@link Animation}.
          *
          * @return The list of Animations
          */
         public List<Animation> getAnimations() {
-            return getChildrenOfType(Animation.class);
+            return getChildrenOfType(CastNodeID.ANIMATION, Animation.class);
         }
 
         /**
@@ -349,12 +349,12 @@ public final class CastNodes {
         }
 
         /**
-         * Returns the children of type {@link Instance}.
+         * Returns a read-only view of the children of type {@link Instance}.
          *
          * @return The list of Instances
          */
         public List<Instance> getInstances() {
-            return getChildrenOfType(Instance.class);
+            return getChildrenOfType(CastNodeID.INSTANCE, Instance.class);
         }
 
         /**
@@ -367,12 +367,12 @@ public final class CastNodes {
         }
 
         /**
-         * Returns the children of type {@link Metadata}.
+         * Returns a read-only view of the children of type {@link Metadata}.
          *
          * @return The list of Metadatas
          */
         public List<Metadata> getMetadatas() {
-            return getChildrenOfType(Metadata.class);
+            return getChildrenOfType(CastNodeID.METADATA, Metadata.class);
         }
 
         /**
@@ -405,7 +405,7 @@ public final class CastNodes {
          * @return The single Skeleton
          */
         public Optional<Skeleton> getSkeleton() {
-            return getChildOfType(Skeleton.class);
+            return getChildOfType(CastNodeID.SKELETON, Skeleton.class);
         }
 
         /**
@@ -418,12 +418,12 @@ public final class CastNodes {
         }
 
         /**
-         * Returns the children of type {@link Mesh}.
+         * Returns a read-only view of the children of type {@link Mesh}.
          *
          * @return The list of Meshes
          */
         public List<Mesh> getMeshes() {
-            return getChildrenOfType(Mesh.class);
+            return getChildrenOfType(CastNodeID.MESH, Mesh.class);
         }
 
         /**
@@ -436,12 +436,12 @@ public final class CastNodes {
         }
 
         /**
-         * Returns the children of type {@link Hair}.
+         * Returns a read-only view of the children of type {@link Hair}.
          *
          * @return The list of Hairs
          */
         public List<Hair> getHairs() {
-            return getChildrenOfType(Hair.class);
+            return getChildrenOfType(CastNodeID.HAIR, Hair.class);
         }
 
         /**
@@ -454,12 +454,12 @@ public final class CastNodes {
         }
 
         /**
-         * Returns the children of type {@link BlendShape}.
+         * Returns a read-only view of the children of type {@link BlendShape}.
          *
          * @return The list of BlendShapes
          */
         public List<BlendShape> getBlendShapes() {
-            return getChildrenOfType(BlendShape.class);
+            return getChildrenOfType(CastNodeID.BLEND_SHAPE, BlendShape.class);
         }
 
         /**
@@ -472,12 +472,12 @@ public final class CastNodes {
         }
 
         /**
-         * Returns the children of type {@link Material}.
+         * Returns a read-only view of the children of type {@link Material}.
          *
          * @return The list of Materials
          */
         public List<Material> getMaterials() {
-            return getChildrenOfType(Material.class);
+            return getChildrenOfType(CastNodeID.MATERIAL, Material.class);
         }
 
         /**
@@ -763,6 +763,19 @@ public final class CastNodes {
             return this;
         }
 
+        /**
+         * Sets the value of the {@code "wb"} property (Vertex Weight Bone Buffer),
+         * using a known maximum value to pick the smallest integer type without scanning the values.
+         *
+         * @param vertexWeightBoneBuffer The new value.
+         * @param maxValue The largest value in the buffer, as an unsigned integer. Values above it are truncated.
+         * @return The {@code this} instance for chaining
+         */
+        public Mesh setVertexWeightBoneBuffer(Buffer vertexWeightBoneBuffer, int maxValue) {
+            createIntBufferProperty("wb", vertexWeightBoneBuffer, maxValue);
+            return this;
+        }
+
         /**
          * Returns the value of the {@code "wv"} property (Vertex Weight Value Buffer).
          *
@@ -803,6 +816,19 @@ public final class CastNodes {
             return this;
         }
 
+        /**
+         * Sets the value of the {@code "f"} property (Face Buffer),
+         * using a known maximum value to pick the smallest integer type without scanning the values.
+         *
+         * @param faceBuffer The new value.
+         * @param maxValue The largest value in the buffer, as an unsigned integer. Values above it are truncated.
+         * @return The {@code this} instance for chaining
+         */
+        public Mesh setFaceBuffer(Buffer faceBuffer, int maxValue) {
+            createIntBufferProperty("f", faceBuffer, maxValue);
+            return this;
+        }
+
         /**
          * Returns the value of the {@code "cl"} property (Color Layer Count).
          *
@@ -958,6 +984,19 @@ public final class CastNodes {
             return this;
         }
 
+        /**
+         * Sets the value of the {@code "se"} property (Segments Buffer),
+         * using a known maximum value to pick the smallest integer type without scanning the values.
+         *
+         * @param segmentsBuffer The new value.
+         * @param maxValue The largest value in the buffer, as an unsigned integer. Values above it are truncated.
+         * @return The {@code this} instance for chaining
+         */
+        public Hair setSegmentsBuffer(Buffer segmentsBuffer, int maxValue) {
+            createIntBufferProperty("se", segmentsBuffer, maxValue);
+            return this;
+        }
+
         /**
          * Returns the value of the {@code "pt"} property (Particle Buffer).
          *
@@ -1073,6 +1112,20 @@ public final class CastNodes {
             return this;
         }
 
+        /**
+         * Sets the value of the {@code "vi"} property (Target Shape Vertex Indices),
+         * using a known maximum value to pick the smallest integer type without scanning the values.
+         *
+         * @param targetShapeVertexIndices The new value.
+         * @param maxValue The largest value in the buffer, as an unsigned integer. Values above it are truncated.
+         * @return The {@code this} instance for chaining
+         */
+        public BlendShape setTargetShapeVertexIndices(Buffer targetShapeVertexIndices,
+                                                      int maxValue) {
+            createIntBufferProperty("vi", targetShapeVertexIndices, maxValue);
+            return this;
+        }
+
         /**
          * Returns the value of the {@code "vp"} property (Target Shape Vertex Positions).
          *
@@ -1129,12 +1182,12 @@ public final class CastNodes {
         }
 
         /**
-         * Returns the children of type {@link Bone}.
+         * Returns a read-only view of the children of type {@link Bone}.
          *
          * @return The list of Bones
          */
         public List<Bone> getBones() {
-            return getChildrenOfType(Bone.class);
+            return getChildrenOfType(CastNodeID.BONE, Bone.class);
         }
 
         /**
@@ -1147,12 +1200,12 @@ public final class CastNodes {
         }
 
         /**
-         * Returns the children of type {@link IkHandle}.
+         * Returns a read-only view of the children of type {@link IkHandle}.
          *
          * @return The list of IkHandles
          */
         public List<IkHandle> getIkHandles() {
-            return getChildrenOfType(IkHandle.class);
+            return getChildrenOfType(CastNodeID.IK_HANDLE, IkHandle.class);
         }
 
         /**
@@ -1165,12 +1218,12 @@ public final class CastNodes {
         }
 
         /**
-         * Returns the children of type {@link Constraint}.
+         * Returns a read-only view of the children of type {@link Constraint}.
          *
          * @return The list of Constraints
          */
         public List<Constraint> getConstraints() {
-            return getChildrenOfType(Constraint.class);
+            return getChildrenOfType(CastNodeID.CONSTRAINT, Constraint.class);
         }
 
         /**
@@ -1779,7 +1832,7 @@ public final class CastNodes {
          * @return The single Skeleton
          */
         public Optional<Skeleton> getSkeleton() {
-            return getChildOfType(Skeleton.class);
+            return getChildOfType(CastNodeID.SKELETON, Skeleton.class);
         }
 
         /**
@@ -1792,12 +1845,12 @@ public final class CastNodes {
         }
 
         /**
-         * Returns the children of type {@link Curve}.
+         * Returns a read-only view of the children of type {@link Curve}.
          *
          * @return The list of Curves
          */
         public List<Curve> getCurves() {
-            return getChildrenOfType(Curve.class);
+            return getChildrenOfType(CastNodeID.CURVE, Curve.class);
         }
 
         /**
@@ -1810,12 +1863,12 @@ public final class CastNodes {
         }
 
         /**
-         * Returns the children of type {@link CurveModeOverride}.
+         * Returns a read-only view of the children of type {@link CurveModeOverride}.
          *
          * @return The list of CurveModeOverrides
          */
         public List<CurveModeOverride> getCurveModeOverrides() {
-            return getChildrenOfType(CurveModeOverride.class);
+            return getChildrenOfType(CastNodeID.CURVE_MODE_OVERRIDE, CurveModeOverride.class);
         }
 
         /**
@@ -1828,12 +1881,12 @@ public final class CastNodes {
         }
 
         /**
-         * Returns the children of type {@link NotificationTrack}.
+         * Returns a read-only view of the children of type {@link NotificationTrack}.
          *
          * @return The list of NotificationTracks
          */
         public List<NotificationTrack> getNotificationTracks() {
-            return getChildrenOfType(NotificationTrack.class);
+            return getChildrenOfType(CastNodeID.NOTIFICATION_TRACK, NotificationTrack.class);
         }
 
         /**
@@ -1980,6 +2033,19 @@ public final class CastNodes {
             return this;
         }
 
+        /**
+         * Sets the value of the {@code "kb"} property (Key Frame Buffer),
+         * using a known maximum value to pick the smallest integer type without scanning the values.
+         *
+         * @param keyFrameBuffer The new value.
+         * @param maxValue The largest value in the buffer, as an unsigned integer. Values above it are truncated.
+         * @return The {@code this} instance for chaining
+         */
+        public Curve setKeyFrameBuffer(Buffer keyFrameBuffer, int maxValue) {
+            createIntBufferProperty("kb", keyFrameBuffer, maxValue);
+            return this;
+        }
+
         /**
          * Returns the value of the {@code "kv"} property (Key Value Buffer).
          *
@@ -2000,6 +2066,19 @@ public final class CastNodes {
             return this;
         }
 
+        /**
+         * Sets the value of the {@code "kv"} property (Key Value Buffer),
+         * using a known maximum value to pick the smallest integer type without scanning the values.
+         *
+         * @param keyValueBuffer The new value.
+         * @param maxValue The largest value in the buffer, as an unsigned integer. Values above it are truncated.
+         * @return The {@code this} instance for chaining
+         */
+        public Curve setKeyValueBufferInt(Buffer keyValueBuffer, int maxValue) {
+            createIntBufferProperty("kv", keyValueBuffer, maxValue);
+            return this;
+        }
+
         /**
          * Sets the value of the {@code "kv"} property (Key Value Buffer).
          *
@@ -2231,6 +2310,19 @@ public final class CastNodes {
             createIntBufferProperty("kb", keyFrameBuffer);
             return this;
         }
+
+        /**
+         * Sets the value of the {@code "kb"} property (Key Frame Buffer),
+         * using a known maximum value to pick the smallest integer type without scanning the values.
+         *
+         * @param keyFrameBuffer The new value.
+         * @param maxValue The largest value in the buffer, as an unsigned integer. Values above it are truncated.
+         * @return The {@code this} instance for chaining
+         */
+        public NotificationTrack setKeyFrameBuffer(Buffer keyFrameBuffer, int maxValue) {
+            createIntBufferProperty("kb", keyFrameBuffer, maxValue);
+            return this;
+        }
     }
 
     /**
@@ -2248,12 +2340,12 @@ public final class CastNodes {
         }
 
         /**
-         * Returns the children of type {@link File}.
+         * Returns a read-only view of the children of type {@link File}.
          *
          * @return The list of Files
          */
         public List<File> getFiles() {
-            return getChildrenOfType(File.class);
+            return getChildrenOfType(CastNodeID.FILE, File.class);
         }
 
         /**
@@ -2266,12 +2358,12 @@ public final class CastNodes {
         }
 
         /**
-         * Returns the children of type {@link Color}.
+         * Returns a read-only view of the children of type {@link Color}.
          *
          * @return The list of Colors
          */
         public List<Color> getColors() {
-            return getChildrenOfType(Color.class);
+            return getChildrenOfType(CastNodeID.COLOR, Color.class);
         }
 
         /**
@@ -2703,12 +2795,12 @@ public final class CastNodes {
         }
 
         /**
-         * Returns the children of type {@link File}.
+         * Returns a read-only view of the children of type {@link File}.
          *
          * @return The list of Files
          */
         public List<File> getFiles() {
-            return getChildrenOfType(File.class);
+            return getChildrenOfType(CastNodeID.FILE, File.class);
         }
 
         /**
@@ -1,6 +1,8 @@
 package be.twofold.tinycast;
 
 import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 
 /**
@@ -19,12 +21,16 @@ import java.util.Objects;
  *   <li>{@link Vec2}, {@link Vec3}, {@link Vec4} for vector types</li>
  *   <li>NIO buffers for arrays of scalars/vectors; the buffer {@code limit()} encodes the element count</li>
  * </ul>
- * Instances are immutable.
+ * Instances are immutable. Array values of properties read in lazy mode are only loaded on the
+ * first call to {@link #getValue()}.
  */
 public final class CastProperty {
     private final CastPropertyID identifier;
     private final String name;
     private final Object value;
+    private final ByteBuffer rawBytes;
+    private byte[] nameBytes;
+    private byte[] stringBytes;
 
     /**
      * Creates a new property.
@@ -36,9 +42,20 @@ public final class CastProperty {
      * @throws NullPointerException if any argument is {@code null}
      */
     public CastProperty(CastPropertyID identifier, String name, Object value) {
+        this(identifier, name, value, null);
+    }
+
+    // Used by PropertyMap to recreate a property it stored without this wrapper
+    CastProperty(CastPropertyID identifier, String name, byte[] nameBytes, Object value, ByteBuffer rawBytes) {
+        this(identifier, name, value, rawBytes);
+        this.nameBytes = nameBytes;
+    }
+
+    CastProperty(CastPropertyID identifier, String name, Object value, ByteBuffer rawBytes) {
         this.identifier = Objects.requireNonNull(identifier);
         this.name = Objects.requireNonNull(name);
         this.value = Objects.requireNonNull(value);
+        this.rawBytes = rawBytes;
 
         if (value instanceof Buffer) {
             int remaining = ((Buffer) value).remaining();
@@ -78,6 +95,9 @@ public final class CastProperty {
      * @return the property value (never {@code null})
      */
     public Object getValue() {
+        if (value instanceof LazyValue) {
+            return ((LazyValue) value).get();
+        }
         return value;
     }
 
@@ -97,9 +117,9 @@ public final class CastProperty {
      */
     public int getLength() {
         int length = 0x08;
-        length += byteLength(name);
+        length += getNameBytes().length;
         if (identifier == CastPropertyID.STRING) {
-            length += byteLength((String) value) + 1;
+            length += getStringBytes().length + 1;
         } else {
             length += getArrayLength() * identifier.getSize();
         }
@@ -117,12 +137,63 @@ public final class CastProperty {
      * @return the array length in number of logical values (at least {@code 1})
      */
     public int getArrayLength() {
+        if (value instanceof LazyValue) {
+            return ((LazyValue) value).getArrayLength();
+        }
         return value instanceof Buffer
             ? ((Buffer) value).remaining() / identifier.getCount()
             : 1;
     }
 
-    private int byteLength(String s) {
+    // The value as it was passed in, so a lazy value is not loaded
+    Object getStoredValue() {
+        return value;
+    }
+
+    ByteBuffer getStoredRawBytes() {
+        return rawBytes;
+    }
+
+    // The little-endian bytes an array was decoded from, if they still match the value
+    ByteBuffer getRawBytes() {
+        ByteBuffer raw = value instanceof LazyValue
+            ? ((LazyValue) value).getRawBytes()
+            : rawBytes;
+        if (raw == null) {
+            return null;
+        }
+
+        Buffer buffer = (Buffer) getValue();
+        if (buffer.position() != 0 || (long) buffer.remaining() * Buffers.elementSize(buffer) != raw.remaining()) {
+            return null;
+        }
+        return raw;
+    }
+
+    // The encoded forms are cached, as they are needed for both the length and the writing
+    byte[] getNameBytes() {
+        byte[] result = nameBytes;
+        if (result == null) {
+            result = nameBytes = encode(name);
+        }
+        return result;
+    }
+
+    byte[] getStringBytes() {
+        byte[] result = stringBytes;
+        if (result == null) {
+            result = stringBytes = encode((String) value);
+        }
+        return result;
+    }
+
+    private static byte[] encode(String s) {
+        // Validates the string, as getBytes silently replaces unpaired surrogates
+        byteLength(s);
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int byteLength(String s) {
         int length = s.length();
         for (int index = 0; index < s.length(); index++) {
             char ch = s.charAt(index);
@@ -154,7 +225,7 @@ public final class CastProperty {
         CastProperty other = (CastProperty) obj;
         return identifier == other.identifier
             && name.equals(other.name)
-            && value.equals(other.value);
+            && getValue().equals(other.getValue());
     }
 
     @Override
@@ -162,7 +233,7 @@ public final class CastProperty {
         int result = 1;
         result = 31 * result + identifier.hashCode();
         result = 31 * result + name.hashCode();
-        result = 31 * result + value.hashCode();
+        result = 31 * result + getValue().hashCode();
         return result;
     }
 
@@ -171,6 +242,6 @@ public final class CastProperty {
         return "CastProperty(" +
             "identifier=" + identifier + ", " +
             "name=" + name + ", " +
-            "value=" + value + ")";
+            "value=" + getValue() + ")";
     }
 }
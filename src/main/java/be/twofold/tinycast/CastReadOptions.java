@@ -0,0 +1,293 @@
+package be.twofold.tinycast;
+
+/**
+ * Options that control how a Cast file is read.
+ * <p>
+ * Instances are immutable; every {@code with*} method returns a modified copy.
+ * Start from {@link #defaults()} and chain the options that are needed:
+ * <pre>{@code
+ * CastReadOptions options = CastReadOptions.defaults()
+ *     .withLazy(true);
+ * }</pre>
+ *
+ * @see Cast#read(java.nio.file.Path, CastReadOptions)
+ */
+public final class CastReadOptions {
+    private static final CastReadOptions DEFAULTS = new CastReadOptions();
+
+    private boolean lazy;
+    private CastNodeFilter nodeFilter;
+    private boolean parallel;
+    private CastBufferAllocator allocator;
+    private long memoryBudget = Long.MAX_VALUE;
+    private long spillThreshold = Long.MAX_VALUE;
+    private int maxConcurrency = Runtime.getRuntime().availableProcessors();
+    private long maxBytesInFlight = Long.MAX_VALUE;
+
+    private CastReadOptions() {
+    }
+
+    /**
+     * Returns the default options, which read every node and every property eagerly.
+     *
+     * @return the default options
+     */
+    public static CastReadOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Returns whether array properties are decoded lazily.
+     *
+     * @return {@code true} if array properties are decoded on first access
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Returns a copy of these options with lazy decoding enabled or disabled.
+     * <p>
+     * In lazy mode, array properties only record their offset, type and length while reading.
+     * The actual data is mapped from the file the first time the value is requested, for example
+     * through {@link CastNodes.Mesh#getVertexPositionBuffer()}. This makes reading files for their
+     * metadata only very cheap. Lazy decoding requires a seekable source, so it only applies to
+     * {@link java.nio.file.Path}, {@link java.nio.channels.FileChannel} and {@link java.nio.ByteBuffer}
+     * sources, and is ignored for streams.
+     *
+     * @param lazy whether array properties should be decoded lazily
+     * @return a copy of these options with the new setting
+     */
+    public CastReadOptions withLazy(boolean lazy) {
+        CastReadOptions result = copy();
+        result.lazy = lazy;
+        return result;
+    }
+
+    /**
+     * Returns the filter that decides which nodes are decoded.
+     *
+     * @return the node filter, or {@code null} if all nodes are decoded
+     */
+    public CastNodeFilter getNodeFilter() {
+        return nodeFilter;
+    }
+
+    /**
+     * Returns a copy of these options with the given node filter.
+     * <p>
+     * Nodes that are rejected by the filter are skipped together with their children, without
+     * decoding them. On streams the bytes are skipped, on files they are not even touched.
+     * Because skipped hashes are never seen, newly created nodes are only guaranteed to get
+     * a hash that is unique among the nodes that were read.
+     *
+     * @param nodeFilter the node filter, or {@code null} to decode all nodes
+     * @return a copy of these options with the new setting
+     */
+    public CastReadOptions withNodeFilter(CastNodeFilter nodeFilter) {
+        CastReadOptions result = copy();
+        result.nodeFilter = nodeFilter;
+        return result;
+    }
+
+    /**
+     * Returns whether sibling subtrees are decoded in parallel.
+     *
+     * @return {@code true} if subtrees are decoded in parallel
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Returns a copy of these options with parallel decoding enabled or disabled.
+     * <p>
+     * In parallel mode, the node size in each header is used to find the offsets of sibling
+     * subtrees without decoding them, after which large subtrees are decoded concurrently in the
+     * {@linkplain java.util.concurrent.ForkJoinPool#commonPool() common pool}. The resulting tree
+     * is identical to the one read sequentially. Parallel decoding requires random access, so it
+     * only applies to {@link java.nio.file.Path}, {@link java.nio.channels.FileChannel} and
+     * {@link java.nio.ByteBuffer} sources, and is ignored for streams.
+     *
+     * @param parallel whether subtrees should be decoded in parallel
+     * @return a copy of these options with the new setting
+     */
+    public CastReadOptions withParallel(boolean parallel) {
+        CastReadOptions result = copy();
+        result.parallel = parallel;
+        return result;
+    }
+
+    /**
+     * Returns the allocator that decoded arrays are stored in.
+     *
+     * @return the allocator, or {@code null} if the default storage is used
+     */
+    public CastBufferAllocator getAllocator() {
+        return allocator;
+    }
+
+    /**
+     * Returns a copy of these options with the given buffer allocator.
+     * <p>
+     * When an allocator is set, every array property is copied into a buffer from the allocator,
+     * for all sources, including lazily decoded arrays. Without an allocator, arrays from streams
+     * are stored on the heap, and arrays from files and buffers are views of the source.
+     *
+     * @param allocator the allocator, or {@code null} to use the default storage
+     * @return a copy of these options with the new setting
+     */
+    public CastReadOptions withAllocator(CastBufferAllocator allocator) {
+        CastReadOptions result = copy();
+        result.allocator = allocator;
+        return result;
+    }
+
+    /**
+     * Returns the maximum number of bytes of array data that is copied into memory.
+     *
+     * @return the memory budget in bytes, {@link Long#MAX_VALUE} if unlimited
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Returns a copy of these options with the given memory budget.
+     * <p>
+     * The budget limits the total size of the array properties that are copied into memory while
+     * reading a file, including those from an {@linkplain #withAllocator(CastBufferAllocator)
+     * allocator}. Reading fails with a {@link CastException} as soon as the next array would
+     * exceed the budget, before any memory is allocated for it. Arrays that are views on a mapped
+     * file or buffer, and arrays that are {@linkplain #withSpillThreshold(long) spilled} to disk
+     * don't count toward the budget. Lazily decoded arrays are not limited either.
+     *
+     * @param memoryBudget the memory budget in bytes, {@link Long#MAX_VALUE} for no limit
+     * @return a copy of these options with the new setting
+     * @throws IllegalArgumentException if the budget is negative
+     */
+    public CastReadOptions withMemoryBudget(long memoryBudget) {
+        if (memoryBudget < 0) {
+            throw new IllegalArgumentException("memoryBudget must be non-negative: " + memoryBudget);
+        }
+        CastReadOptions result = copy();
+        result.memoryBudget = memoryBudget;
+        return result;
+    }
+
+    /**
+     * Returns the array size from which arrays are spilled to disk.
+     *
+     * @return the spill threshold in bytes, {@link Long#MAX_VALUE} if arrays are never spilled
+     */
+    public long getSpillThreshold() {
+        return spillThreshold;
+    }
+
+    /**
+     * Returns a copy of these options with the given spill threshold.
+     * <p>
+     * Array properties of at least this many bytes, which would otherwise be copied into memory,
+     * are written to a temporary file instead, and exposed as a view on a mapping of that file.
+     * The file is deleted right away, its disk space is reclaimed when the mapping is garbage
+     * collected. Spilled arrays bypass the {@linkplain #withAllocator(CastBufferAllocator)
+     * allocator}, and don't count toward the {@linkplain #withMemoryBudget(long) memory budget}.
+     *
+     * @param spillThreshold the spill threshold in bytes, {@link Long#MAX_VALUE} to never spill
+     * @return a copy of these options with the new setting
+     * @throws IllegalArgumentException if the threshold is negative
+     */
+    public CastReadOptions withSpillThreshold(long spillThreshold) {
+        if (spillThreshold < 0) {
+            throw new IllegalArgumentException("spillThreshold must be non-negative: " + spillThreshold);
+        }
+        CastReadOptions result = copy();
+        result.spillThreshold = spillThreshold;
+        return result;
+    }
+
+    /**
+     * Returns the maximum number of files that are read at the same time by a batch.
+     *
+     * @return the maximum number of concurrent reads
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Returns a copy of these options with the given maximum number of concurrent reads.
+     * <p>
+     * This only applies to {@linkplain Cast#readAll(java.util.Collection, CastReadOptions) batch
+     * reads}. The default is the number of available processors.
+     *
+     * @param maxConcurrency the maximum number of files that are read at the same time
+     * @return a copy of these options with the new setting
+     * @throws IllegalArgumentException if the maximum is not positive
+     */
+    public CastReadOptions withMaxConcurrency(int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency);
+        }
+        CastReadOptions result = copy();
+        result.maxConcurrency = maxConcurrency;
+        return result;
+    }
+
+    /**
+     * Returns the maximum number of bytes that a batch has in flight.
+     *
+     * @return the maximum number of bytes in flight, {@link Long#MAX_VALUE} if unlimited
+     */
+    public long getMaxBytesInFlight() {
+        return maxBytesInFlight;
+    }
+
+    /**
+     * Returns a copy of these options with the given maximum number of bytes in flight.
+     * <p>
+     * This only applies to {@linkplain Cast#readAll(java.util.Collection, CastReadOptions) batch
+     * reads}. The bytes of a file are in flight from the moment it starts being read until its
+     * result has been handed over, and are estimated by the size of the file. A file that is
+     * larger than the maximum on its own is still read, but not concurrently with any other file.
+     *
+     * @param maxBytesInFlight the maximum number of bytes in flight, {@link Long#MAX_VALUE} for no limit
+     * @return a copy of these options with the new setting
+     * @throws IllegalArgumentException if the maximum is not positive
+     */
+    public CastReadOptions withMaxBytesInFlight(long maxBytesInFlight) {
+        if (maxBytesInFlight <= 0) {
+            throw new IllegalArgumentException("maxBytesInFlight must be positive: " + maxBytesInFlight);
+        }
+        CastReadOptions result = copy();
+        result.maxBytesInFlight = maxBytesInFlight;
+        return result;
+    }
+
+    private CastReadOptions copy() {
+        CastReadOptions result = new CastReadOptions();
+        result.lazy = lazy;
+        result.nodeFilter = nodeFilter;
+        result.parallel = parallel;
+        result.allocator = allocator;
+        result.memoryBudget = memoryBudget;
+        result.spillThreshold = spillThreshold;
+        result.maxConcurrency = maxConcurrency;
+        result.maxBytesInFlight = maxBytesInFlight;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "CastReadOptions(" +
+            "lazy=" + lazy + ", " +
+            "nodeFilter=" + nodeFilter + ", " +
+            "parallel=" + parallel + ", " +
+            "allocator=" + allocator + ", " +
+            "memoryBudget=" + memoryBudget + ", " +
+            "spillThreshold=" + spillThreshold + ", " +
+            "maxConcurrency=" + maxConcurrency + ", " +
+            "maxBytesInFlight=" + maxBytesInFlight +
+            ")";
+    }
+}
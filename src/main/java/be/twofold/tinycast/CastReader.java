@@ -1,37 +1,134 @@
 package be.twofold.tinycast;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 final class CastReader {
-    private static final Map<CastNodeID, Set<String>> ARRAY_TYPES = Map.of(
-        CastNodeID.MESH, Set.of("vp", "vn", "vt", "c%d", "u%d", "wb", "wv", "f"),
-        CastNodeID.HAIR, Set.of("se", "pt"),
-        CastNodeID.BLEND_SHAPE, Set.of("vi", "vp", "ts"),
-        CastNodeID.CURVE, Set.of("kb", "kv"),
-        CastNodeID.NOTIFICATION_TRACK, Set.of("kb")
-    );
+    private static final int NODE_HEADER_SIZE = 24;
+    private static final long FORK_THRESHOLD = 64 * 1024;
 
     private final BinaryReader reader;
+    private final CastReadOptions options;
+    private final LazyValue.Loader loader;
+    private final MappedBinaryReader source;
+    private final AtomicLong decodedBytes;
+    private final AtomicBoolean cancelled;
     private long maxHash = 0;
+    private long nodeEnd = Long.MAX_VALUE;
 
-    CastReader(BinaryReader reader) {
+    CastReader(BinaryReader reader, CastReadOptions options, LazyValue.Loader loader) {
+        this(reader, options, loader, new AtomicLong(), new AtomicBoolean());
+    }
+
+    private CastReader(BinaryReader reader, CastReadOptions options, LazyValue.Loader loader, AtomicLong decodedBytes, AtomicBoolean cancelled) {
         this.reader = Objects.requireNonNull(reader);
+        this.options = Objects.requireNonNull(options);
+        this.loader = loader;
+        this.decodedBytes = decodedBytes;
+        this.cancelled = cancelled;
+        this.source = options.isParallel() && reader instanceof MappedBinaryReader
+            ? (MappedBinaryReader) reader
+            : null;
+    }
+
+    static Cast read(InputStream in, CastReadOptions options) throws CastException {
+        try (BinaryReader reader = new StreamBinaryReader(in)) {
+            return new CastReader(reader, options, null).read();
+        } catch (CastException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CastException("Error reading cast file", e);
+        }
+    }
+
+    static Cast read(Path path, CastReadOptions options) throws CastException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mappings stay valid after the channel is closed, only ranges that don't fit
+            // in a shared mapping open the file again
+            LazyValue.Loader loader = options.isLazy() ? new MappedFile(channel, (offset, length) -> {
+                try (FileChannel lazyChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    return lazyChannel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                }
+            }) : null;
+            return read(channel, options, loader);
+        } catch (CastException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CastException("Error reading cast file", e);
+        }
+    }
+
+    static Cast read(FileChannel channel, CastReadOptions options) throws CastException {
+        try {
+            LazyValue.Loader loader = options.isLazy()
+                ? new MappedFile(channel, (offset, length) -> channel.map(FileChannel.MapMode.READ_ONLY, offset, length))
+                : null;
+            return read(channel, options, loader);
+        } catch (CastException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CastException("Error reading cast file", e);
+        }
+    }
+
+    private static Cast read(FileChannel channel, CastReadOptions options, LazyValue.Loader loader) throws CastException {
+        try {
+            MappedBinaryReader reader = new MappedBinaryReader(channel);
+            Cast cast = new CastReader(reader, options, loader).read();
+            channel.position(reader.position());
+            return cast;
+        } catch (CastException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CastException("Error reading cast file", e);
+        }
+    }
+
+    static Cast read(ByteBuffer buffer, CastReadOptions options) throws CastException {
+        ByteBuffer slice = buffer.slice();
+        LazyValue.Loader loader = options.isLazy()
+            ? (offset, length) -> slice.duplicate().position((int) offset).limit((int) offset + length).slice()
+            : null;
+
+        try {
+            MappedBinaryReader reader = new MappedBinaryReader(slice);
+            Cast cast = new CastReader(reader, options, loader).read();
+            buffer.position(buffer.position() + (int) reader.position());
+            return cast;
+        } catch (CastException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CastException("Error reading cast file", e);
+        }
     }
 
-    static Cast read(InputStream in) throws CastException {
-        try (BinaryReader reader = new BinaryReader(new BufferedInputStream(in))) {
-            return new CastReader(reader).read();
+    static void parse(InputStream in, CastHandler handler) throws CastException {
+        try (BinaryReader reader = new StreamBinaryReader(in)) {
+            new CastReader(reader, CastReadOptions.defaults(), null).parse(handler);
+        } catch (CastException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CastException("Error reading cast file", e);
+        }
+    }
+
+    static void parse(Path path, CastHandler handler) throws CastException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            new CastReader(new MappedBinaryReader(channel), CastReadOptions.defaults(), null).parse(handler);
         } catch (CastException e) {
             throw e;
         } catch (IOException e) {
@@ -40,6 +137,22 @@ final class CastReader {
     }
 
     private Cast read() throws IOException {
+        int rootNodeCount = readHeader();
+
+        AtomicLong hasher = new AtomicLong();
+        List<CastNode> rootNodes = readNodes(hasher, rootNodeCount, 0);
+        hasher.set(maxHash + 1);
+        return new Cast(hasher, rootNodes);
+    }
+
+    private void parse(CastHandler handler) throws IOException {
+        int rootNodeCount = readHeader();
+        for (int i = 0; i < rootNodeCount; i++) {
+            parseNode(handler);
+        }
+    }
+
+    int readHeader() throws IOException {
         int magic = reader.readInt();
         if (magic != 0x74736163) {
             throw new CastException("Invalid magic number: 0x" + Integer.toHexString(magic));
@@ -55,64 +168,173 @@ final class CastReader {
         if (flags != 0) {
             throw new CastException("Invalid flags: " + flags);
         }
+        return rootNodeCount;
+    }
 
-        AtomicLong hasher = new AtomicLong();
-        List<CastNode> rootNodes = new ArrayList<>(rootNodeCount);
-        for (int i = 0; i < rootNodeCount; i++) {
-            rootNodes.add(readNode(hasher));
+    CastNode readNode(AtomicLong hasher, int depth) throws IOException {
+        ForkJoinTasks.checkCancelled(cancelled);
+        long start = reader.position();
+        CastNodeID identifier = readNodeID();
+        int nodeSize = reader.readInt();
+        long nodeHash = reader.readLong();
+        int propertyCount = reader.readInt();
+        int childCount = reader.readInt();
+
+        CastNodeFilter nodeFilter = options.getNodeFilter();
+        if (nodeFilter != null && !nodeFilter.accept(identifier, nodeHash, depth)) {
+            skipNode(nodeSize);
+            return null;
         }
-        hasher.set(maxHash + 1);
-        return new Cast(hasher, rootNodes);
+
+        if (Long.compareUnsigned(nodeHash, maxHash) > 0) {
+            maxHash = nodeHash;
+        }
+
+        // The properties come before the children, so only this node's end has to be tracked
+        nodeEnd = start + Integer.toUnsignedLong(nodeSize);
+        PropertyMap properties = new PropertyMap(identifier, propertyCount);
+        for (int i = 0; i < propertyCount; i++) {
+            readProperty(identifier, properties);
+        }
+
+        List<CastNode> children = readNodes(hasher, childCount, depth + 1);
+        return CastNodes.create(identifier, hasher, nodeHash, properties, children);
     }
 
-    private CastNode readNode(AtomicLong hasher) throws IOException {
-        CastNodeID identifier;
+    private List<CastNode> readNodes(AtomicLong hasher, int count, int depth) throws IOException {
+        List<CastNode> nodes = new ArrayList<>(count);
+        List<ReadTask> tasks = new ArrayList<>();
+        Throwable failure = null;
         try {
-            identifier = CastNodeID.fromValue(reader.readInt());
-        } catch (IllegalArgumentException e) {
-            throw new CastException(e.getMessage());
+            for (int i = 0; i < count; i++) {
+                if (source != null) {
+                    // Peek at the size, and hand large subtrees off to another thread
+                    long offset = source.position();
+                    source.skip(Integer.BYTES);
+                    long nodeSize = Integer.toUnsignedLong(source.readInt());
+                    if (nodeSize >= FORK_THRESHOLD) {
+                        CastReader taskReader = new CastReader(source.duplicate(offset), options, loader, decodedBytes, cancelled);
+                        ReadTask task = new ReadTask(taskReader, hasher, depth, nodes.size());
+                        task.fork();
+                        tasks.add(task);
+                        nodes.add(null);
+                        source.seek(offset + nodeSize);
+                        continue;
+                    }
+                    source.seek(offset);
+                }
+
+                CastNode node = readNode(hasher, depth);
+                if (node != null) {
+                    nodes.add(node);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            failure = e;
         }
+
+        // Also waits for the forked subtrees after a failure, so none of them keeps reading
+        if (!tasks.isEmpty() || failure != null) {
+            ForkJoinTasks.joinAll(tasks, cancelled, failure);
+            for (ReadTask task : tasks) {
+                nodes.set(task.index, task.getRawResult());
+                if (Long.compareUnsigned(task.reader.maxHash, maxHash) > 0) {
+                    maxHash = task.reader.maxHash;
+                }
+            }
+            nodes.removeIf(Objects::isNull);
+        }
+        return nodes;
+    }
+
+    private void parseNode(CastHandler handler) throws IOException {
+        long start = reader.position();
+        CastNodeID identifier = readNodeID();
         int nodeSize = reader.readInt();
         long nodeHash = reader.readLong();
-        if (Long.compareUnsigned(nodeHash, maxHash) > 0) {
-            maxHash = nodeHash;
-        }
         int propertyCount = reader.readInt();
         int childCount = reader.readInt();
 
-        Map<String, CastProperty> properties = new LinkedHashMap<>(propertyCount);
+        if (!handler.startNode(identifier, nodeHash, propertyCount, childCount)) {
+            skipNode(nodeSize);
+            return;
+        }
+
+        nodeEnd = start + Integer.toUnsignedLong(nodeSize);
         for (int i = 0; i < propertyCount; i++) {
-            CastProperty property = readProperty(identifier);
-            properties.put(property.getName(), property);
+            CastPropertyID propertyID = readPropertyID();
+            int nameSize = Short.toUnsignedInt(reader.readShort());
+            int arrayLength = reader.readInt();
+
+            PropertyKey key = readPropertyKey(identifier, nameSize);
+            Object value = key.isArray()
+                ? toArray(propertyID, reader.readTransientBuffer(arraySize(propertyID, arrayLength, nodeEnd - reader.position())))
+                : readSingle(propertyID);
+            handler.property(key.getName(), propertyID, arrayLength, value);
         }
 
-        List<CastNode> children = new ArrayList<>(childCount);
         for (int i = 0; i < childCount; i++) {
-            children.add(readNode(hasher));
+            parseNode(handler);
         }
+        handler.endNode();
+    }
 
-        return CastNodes.create(identifier, hasher, nodeHash, properties, children);
+    private void skipNode(int nodeSize) throws IOException {
+        long remaining = Integer.toUnsignedLong(nodeSize) - NODE_HEADER_SIZE;
+        if (remaining < 0) {
+            throw new CastException("Invalid node size: " + Integer.toUnsignedLong(nodeSize));
+        }
+        reader.skip(remaining);
+    }
+
+    private void readProperty(CastNodeID typeId, PropertyMap properties) throws IOException {
+        CastPropertyID identifier = readPropertyID();
+        int nameSize = Short.toUnsignedInt(reader.readShort());
+        int arrayLength = reader.readInt();
+
+        PropertyKey key = readPropertyKey(typeId, nameSize);
+        properties.put(key, readPropertyValue(identifier, key, arrayLength));
     }
 
-    private CastProperty readProperty(CastNodeID typeId) throws IOException {
-        CastPropertyID identifier;
+    private CastProperty readPropertyValue(CastPropertyID identifier, PropertyKey key, int arrayLength) throws IOException {
+        if (!key.isArray()) {
+            return new CastProperty(identifier, key.getName(), readSingle(identifier));
+        }
+        if (loader != null) {
+            LazyValue value = new LazyValue(loader, options.getAllocator(), identifier, reader.position(), arrayLength);
+            reader.skip(arraySize(identifier, arrayLength, nodeEnd - reader.position()));
+            return new CastProperty(identifier, key.getName(), value);
+        }
+
+        // Keep the raw bytes around, so writing them back out doesn't need a conversion
+        ByteBuffer rawBytes = readArray(identifier, arrayLength);
+        return new CastProperty(identifier, key.getName(), toArray(identifier, rawBytes), rawBytes);
+    }
+
+    CastNodeID readNodeID() throws IOException {
         try {
-            identifier = CastPropertyID.fromValue(reader.readShort());
+            return CastNodeID.fromValue(reader.readInt());
         } catch (IllegalArgumentException e) {
             throw new CastException(e.getMessage());
         }
-        short nameSize = reader.readShort();
-        int arrayLength = reader.readInt();
+    }
 
-        String name = reader.readString(nameSize);
-        boolean isArray = ARRAY_TYPES.getOrDefault(typeId, Set.of()).contains(name)
-            || (typeId == CastNodeID.MESH && (name.startsWith("c") || name.startsWith("u")));
-        Object value = isArray ? readArray(identifier, arrayLength) : readSingle(identifier);
+    CastPropertyID readPropertyID() throws IOException {
+        try {
+            return CastPropertyID.fromValue(reader.readShort());
+        } catch (IllegalArgumentException e) {
+            throw new CastException(e.getMessage());
+        }
+    }
 
-        return new CastProperty(identifier, name, value);
+    PropertyKey readPropertyKey(CastNodeID typeId, int nameSize) throws IOException {
+        if (nameSize <= Long.BYTES) {
+            return PropertyKey.lookup(typeId, reader.readPacked(nameSize), nameSize);
+        }
+        return PropertyKey.of(typeId, reader.readString(nameSize));
     }
 
-    private Object readSingle(CastPropertyID identifier) throws IOException {
+    Object readSingle(CastPropertyID identifier) throws IOException {
         switch (identifier) {
             case BYTE:
                 return reader.readByte();
@@ -151,8 +373,43 @@ final class CastReader {
         }
     }
 
-    private Buffer readArray(CastPropertyID identifier, int arrayLength) throws IOException {
-        ByteBuffer buffer = reader.readBuffer(arrayLength * identifier.getSize());
+    private ByteBuffer readArray(CastPropertyID identifier, int arrayLength) throws IOException {
+        int length = arraySize(identifier, arrayLength, nodeEnd - reader.position());
+        CastBufferAllocator allocator = options.getAllocator();
+        if (allocator == null && reader instanceof MappedBinaryReader) {
+            // A view on the source, which doesn't take up any memory
+            return reader.readBuffer(length);
+        }
+
+        if (length >= options.getSpillThreshold()) {
+            return SpillFile.spill(reader, length);
+        }
+
+        long decoded = decodedBytes.addAndGet(length);
+        if (decoded > options.getMemoryBudget()) {
+            throw new CastException("Memory budget of " + options.getMemoryBudget() + " bytes exceeded, " +
+                "decoding " + length + " more bytes would use " + decoded);
+        }
+
+        if (allocator == null) {
+            return reader.readBuffer(length);
+        }
+        ByteBuffer buffer = BufferAllocators.allocate(allocator, length);
+        reader.read(buffer);
+        return buffer.flip().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // Checked against the bytes left in the node, so a corrupt length fails before anything is allocated
+    static int arraySize(CastPropertyID identifier, int arrayLength, long available) throws CastException {
+        long size = Integer.toUnsignedLong(arrayLength) * identifier.getSize();
+        if (size > Integer.MAX_VALUE || size > available) {
+            throw new CastException("Invalid array length: " + Integer.toUnsignedLong(arrayLength) +
+                ", only " + Math.max(available, 0) + " bytes left in node");
+        }
+        return (int) size;
+    }
+
+    static Buffer toArray(CastPropertyID identifier, ByteBuffer buffer) {
         switch (identifier) {
             case BYTE:
                 return buffer;
@@ -173,4 +430,29 @@ final class CastReader {
                 throw new AssertionError();
         }
     }
+
+    private static final class ReadTask extends RecursiveTask<CastNode> {
+        private static final long serialVersionUID = 1L;
+
+        private final CastReader reader;
+        private final AtomicLong hasher;
+        private final int depth;
+        private final int index;
+
+        private ReadTask(CastReader reader, AtomicLong hasher, int depth, int index) {
+            this.reader = reader;
+            this.hasher = hasher;
+            this.depth = depth;
+            this.index = index;
+        }
+
+        @Override
+        protected CastNode compute() {
+            try {
+                return reader.readNode(hasher, depth);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
 }
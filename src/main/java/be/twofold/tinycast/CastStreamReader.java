@@ -0,0 +1,483 @@
+package be.twofold.tinycast;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A pull-based cursor over the contents of a Cast file.
+ * <p>
+ * Unlike {@link Cast#read(InputStream)}, no node tree is built. Instead, the caller advances
+ * the cursor with {@link #next()} and inspects the current node or property. Array properties
+ * are not decoded up front; their values can be read in chunks with {@link #readFloats} and
+ * {@link #readInts}, so arbitrarily large buffers can be streamed with bounded memory. Any part
+ * of an array that is not read is skipped on the next call to {@link #next()}.
+ * <pre>{@code
+ * try (CastStreamReader reader = CastStreamReader.open(path)) {
+ *     CastStreamReader.Event event;
+ *     while ((event = reader.next()) != CastStreamReader.Event.END) {
+ *         if (event == CastStreamReader.Event.NODE_START && reader.getNodeIdentifier() != CastNodeID.MESH) {
+ *             reader.skipNode();
+ *         }
+ *     }
+ * }
+ * }</pre>
+ *
+ * @see CastHandler
+ */
+public final class CastStreamReader implements Closeable {
+    /**
+     * The events reported by {@link #next()}.
+     */
+    public enum Event {
+        /**
+         * The start of a node. The node header can be queried.
+         */
+        NODE_START,
+
+        /**
+         * A property of the current node. The property header and value can be queried.
+         */
+        PROPERTY,
+
+        /**
+         * The end of the current node, after all its properties and children.
+         */
+        NODE_END,
+
+        /**
+         * The end of the file. No more events follow.
+         */
+        END,
+    }
+
+    private final BinaryReader reader;
+    private final Closeable closeable;
+    private final CastReader castReader;
+
+    private int depth = -1;
+    private CastNodeID[] nodeIdentifiers = new CastNodeID[8];
+    private long[] nodeHashes = new long[8];
+    private long[] nodeEnds = new long[8];
+    private int[] remainingProperties = new int[8];
+    private int[] remainingChildren = new int[8];
+    private final int rootNodeCount;
+    private int remainingRootNodes;
+
+    private Event event;
+    private String propertyName;
+    private CastPropertyID propertyIdentifier;
+    private int arrayLength;
+    private boolean array;
+    private Object value;
+    private long remainingBytes;
+
+    private CastStreamReader(BinaryReader reader, Closeable closeable) throws IOException {
+        this.reader = Objects.requireNonNull(reader);
+        this.closeable = Objects.requireNonNull(closeable);
+        this.castReader = new CastReader(reader, CastReadOptions.defaults(), null);
+        this.rootNodeCount = castReader.readHeader();
+        this.remainingRootNodes = rootNodeCount;
+    }
+
+    /**
+     * Opens a cursor over the Cast file in the specified input stream.
+     * <p>
+     * The file header is read and validated immediately.
+     *
+     * @param in the input stream to read from
+     * @return a new cursor, positioned before the first node
+     * @throws CastException if the header cannot be read or is invalid
+     */
+    public static CastStreamReader open(InputStream in) throws CastException {
+        try {
+            BinaryReader reader = new StreamBinaryReader(in);
+            return new CastStreamReader(reader, reader);
+        } catch (CastException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CastException("Error reading cast file", e);
+        }
+    }
+
+    /**
+     * Opens a cursor over the Cast file at the specified path.
+     * <p>
+     * The file is memory-mapped, so skipped nodes and array values are never loaded.
+     *
+     * @param path the path of the file to read
+     * @return a new cursor, positioned before the first node
+     * @throws CastException if the file cannot be opened, or the header is invalid
+     */
+    public static CastStreamReader open(Path path) throws CastException {
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                return new CastStreamReader(new MappedBinaryReader(channel), channel);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        } catch (CastException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CastException("Error reading cast file", e);
+        }
+    }
+
+    /**
+     * Advances the cursor to the next event.
+     * <p>
+     * Any unread values of the current array property are skipped.
+     *
+     * @return the next event, {@link Event#END} once the whole file has been read
+     * @throws CastException if an error occurs while reading or parsing the Cast file
+     */
+    public Event next() throws CastException {
+        try {
+            return event = advance();
+        } catch (CastException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CastException("Error reading cast file", e);
+        }
+    }
+
+    private Event advance() throws IOException {
+        if (event == Event.END) {
+            return Event.END;
+        }
+        clearProperty();
+
+        if (depth < 0) {
+            if (remainingRootNodes == 0) {
+                return Event.END;
+            }
+            remainingRootNodes--;
+            return startNode();
+        }
+        if (remainingProperties[depth] > 0) {
+            remainingProperties[depth]--;
+            return startProperty();
+        }
+        if (remainingChildren[depth] > 0) {
+            remainingChildren[depth]--;
+            return startNode();
+        }
+        depth--;
+        return Event.NODE_END;
+    }
+
+    private Event startNode() throws IOException {
+        long start = reader.position();
+        CastNodeID identifier = castReader.readNodeID();
+        int nodeSize = reader.readInt();
+        long nodeHash = reader.readLong();
+        int propertyCount = reader.readInt();
+        int childCount = reader.readInt();
+
+        if (++depth == nodeHashes.length) {
+            int newLength = depth * 2;
+            nodeIdentifiers = Arrays.copyOf(nodeIdentifiers, newLength);
+            nodeHashes = Arrays.copyOf(nodeHashes, newLength);
+            nodeEnds = Arrays.copyOf(nodeEnds, newLength);
+            remainingProperties = Arrays.copyOf(remainingProperties, newLength);
+            remainingChildren = Arrays.copyOf(remainingChildren, newLength);
+        }
+        nodeIdentifiers[depth] = identifier;
+        nodeHashes[depth] = nodeHash;
+        nodeEnds[depth] = start + Integer.toUnsignedLong(nodeSize);
+        remainingProperties[depth] = propertyCount;
+        remainingChildren[depth] = childCount;
+        return Event.NODE_START;
+    }
+
+    private Event startProperty() throws IOException {
+        propertyIdentifier = castReader.readPropertyID();
+        int nameSize = Short.toUnsignedInt(reader.readShort());
+        arrayLength = reader.readInt();
+        PropertyKey key = castReader.readPropertyKey(nodeIdentifiers[depth], nameSize);
+        propertyName = key.getName();
+        array = key.isArray();
+        if (array) {
+            remainingBytes = CastReader.arraySize(propertyIdentifier, arrayLength, nodeEnds[depth] - reader.position());
+        } else {
+            value = castReader.readSingle(propertyIdentifier);
+        }
+        return Event.PROPERTY;
+    }
+
+    private void clearProperty() throws IOException {
+        if (remainingBytes > 0) {
+            reader.skip(remainingBytes);
+        }
+        propertyName = null;
+        propertyIdentifier = null;
+        arrayLength = 0;
+        array = false;
+        value = null;
+        remainingBytes = 0;
+    }
+
+    /**
+     * Skips the remainder of the current node, including all its properties and children.
+     * <p>
+     * The skip uses the node size from the header, so nothing is decoded. After this call, the
+     * next call to {@link #next()} returns the {@link Event#NODE_END} of the current node.
+     *
+     * @throws CastException         if an error occurs while skipping
+     * @throws IllegalStateException if the cursor is not inside a node
+     */
+    public void skipNode() throws CastException {
+        if (depth < 0) {
+            throw new IllegalStateException("Not inside a node");
+        }
+        try {
+            remainingBytes = 0;
+            reader.skip(nodeEnds[depth] - reader.position());
+            remainingProperties[depth] = 0;
+            remainingChildren[depth] = 0;
+        } catch (CastException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CastException("Error reading cast file", e);
+        }
+    }
+
+    /**
+     * Returns the number of root nodes declared in the file header.
+     *
+     * @return the number of root nodes
+     */
+    public int getRootNodeCount() {
+        return rootNodeCount;
+    }
+
+    /**
+     * Returns the depth of the current node, where root nodes have depth {@code 0}.
+     *
+     * @return the depth of the current node, or {@code -1} if outside any node
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Returns the type of the current node.
+     *
+     * @return the type of the current node
+     * @throws IllegalStateException if the cursor is not inside a node
+     */
+    public CastNodeID getNodeIdentifier() {
+        checkNode();
+        return nodeIdentifiers[depth];
+    }
+
+    /**
+     * Returns the hash of the current node.
+     *
+     * @return the hash of the current node
+     * @throws IllegalStateException if the cursor is not inside a node
+     */
+    public long getNodeHash() {
+        checkNode();
+        return nodeHashes[depth];
+    }
+
+    /**
+     * Returns the name of the current property.
+     *
+     * @return the name of the current property
+     * @throws IllegalStateException if the current event is not {@link Event#PROPERTY}
+     */
+    public String getPropertyName() {
+        checkProperty();
+        return propertyName;
+    }
+
+    /**
+     * Returns the type of the current property.
+     *
+     * @return the type of the current property
+     * @throws IllegalStateException if the current event is not {@link Event#PROPERTY}
+     */
+    public CastPropertyID getPropertyIdentifier() {
+        checkProperty();
+        return propertyIdentifier;
+    }
+
+    /**
+     * Returns the number of values in the current property.
+     *
+     * @return the array length of the current property
+     * @throws IllegalStateException if the current event is not {@link Event#PROPERTY}
+     */
+    public int getArrayLength() {
+        checkProperty();
+        return arrayLength;
+    }
+
+    /**
+     * Returns whether the current property is an array property.
+     *
+     * @return {@code true} if the value of the current property is a buffer
+     * @throws IllegalStateException if the current event is not {@link Event#PROPERTY}
+     */
+    public boolean isArray() {
+        checkProperty();
+        return array;
+    }
+
+    /**
+     * Returns the value of the current property.
+     * <p>
+     * For array properties, the whole array is read into a buffer, which is only possible
+     * when none of the values have been read through {@link #readFloats} or {@link #readInts}.
+     *
+     * @return the value of the current property, see {@link CastProperty#getValue()}
+     * @throws CastException         if an error occurs while reading the array
+     * @throws IllegalStateException if the current event is not {@link Event#PROPERTY}, or
+     *                               if part of the array has already been read
+     */
+    public Object getValue() throws CastException {
+        checkProperty();
+        if (value == null) {
+            // The size was already checked against the node when the property was started
+            int length = arrayLength * propertyIdentifier.getSize();
+            if (remainingBytes != length) {
+                throw new IllegalStateException("Part of the array has already been read");
+            }
+            try {
+                value = CastReader.toArray(propertyIdentifier, reader.readBuffer(length));
+                remainingBytes = 0;
+            } catch (CastException e) {
+                throw e;
+            } catch (IOException e) {
+                throw new CastException("Error reading cast file", e);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Reads the next values of the current floating point array property.
+     * <p>
+     * Vector properties are read per component, so a {@link CastPropertyID#VECTOR_3} array of
+     * length {@code n} yields {@code 3 * n} floats.
+     *
+     * @param dst    the array to read into
+     * @param offset the offset in {@code dst} of the first value
+     * @param length the maximum number of values to read
+     * @return the number of values read, or {@code -1} if all values have been read
+     * @throws CastException         if an error occurs while reading
+     * @throws IllegalStateException if the current property is not a floating point array
+     */
+    public int readFloats(float[] dst, int offset, int length) throws CastException {
+        Objects.checkFromIndexSize(offset, length, dst.length);
+        checkArray();
+        switch (propertyIdentifier) {
+            case FLOAT:
+            case VECTOR_2:
+            case VECTOR_3:
+            case VECTOR_4:
+                break;
+            default:
+                throw new IllegalStateException("Not a floating point array: " + propertyIdentifier);
+        }
+        if (remainingBytes == 0) {
+            return -1;
+        }
+
+        int count = (int) Math.min(length, remainingBytes / Float.BYTES);
+        try {
+            reader.readFloats(dst, offset, count);
+        } catch (CastException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CastException("Error reading cast file", e);
+        }
+        remainingBytes -= (long) count * Float.BYTES;
+        return count;
+    }
+
+    /**
+     * Reads the next values of the current integral array property.
+     * <p>
+     * Byte and short values are widened as unsigned values, which matches how indices are
+     * stored in a Cast file.
+     *
+     * @param dst    the array to read into
+     * @param offset the offset in {@code dst} of the first value
+     * @param length the maximum number of values to read
+     * @return the number of values read, or {@code -1} if all values have been read
+     * @throws CastException         if an error occurs while reading
+     * @throws IllegalStateException if the current property is not an integral array
+     */
+    public int readInts(int[] dst, int offset, int length) throws CastException {
+        Objects.checkFromIndexSize(offset, length, dst.length);
+        checkArray();
+        if (remainingBytes == 0) {
+            return -1;
+        }
+
+        int size = propertyIdentifier.getSize();
+        int count = (int) Math.min(length, remainingBytes / size);
+        try {
+            switch (propertyIdentifier) {
+                case BYTE:
+                    for (int i = offset; i < offset + count; i++) {
+                        dst[i] = Byte.toUnsignedInt(reader.readByte());
+                    }
+                    break;
+                case SHORT:
+                    for (int i = offset; i < offset + count; i++) {
+                        dst[i] = Short.toUnsignedInt(reader.readShort());
+                    }
+                    break;
+                case INTEGER_32:
+                    reader.readInts(dst, offset, count);
+                    break;
+                default:
+                    throw new IllegalStateException("Not an integral array: " + propertyIdentifier);
+            }
+        } catch (CastException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CastException("Error reading cast file", e);
+        }
+        remainingBytes -= (long) count * size;
+        return count;
+    }
+
+    private void checkNode() {
+        if (depth < 0) {
+            throw new IllegalStateException("Not inside a node");
+        }
+    }
+
+    private void checkProperty() {
+        if (event != Event.PROPERTY) {
+            throw new IllegalStateException("Not at a property");
+        }
+    }
+
+    private void checkArray() {
+        checkProperty();
+        if (!array) {
+            throw new IllegalStateException("Not an array property");
+        }
+        if (value != null) {
+            throw new IllegalStateException("The array has already been read");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeable.close();
+    }
+}
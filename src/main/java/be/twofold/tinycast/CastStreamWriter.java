@@ -0,0 +1,291 @@
+package be.twofold.tinycast;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A push-based writer that produces a Cast file incrementally.
+ * <p>
+ * Unlike {@link Cast#write(Path)}, no node tree has to be built in memory first. Instead, the
+ * caller opens nodes with {@link #beginNode}, adds their properties with {@link #property}, and
+ * closes them again with {@link #endNode()}. Children are written between the properties and the
+ * end of their parent. The size and counts in every node header are reserved when the node begins,
+ * and filled in when it ends, which is why the target must be seekable. Only the headers of the
+ * open nodes are kept, so memory use does not depend on the size of the file.
+ * <pre>{@code
+ * try (CastStreamWriter writer = CastStreamWriter.open(path)) {
+ *     writer.beginNode(CastNodeID.ROOT, 1);
+ *     writer.beginNode(CastNodeID.MODEL, 2);
+ *     writer.property(CastPropertyID.STRING, "n", "Triangle");
+ *     writer.endNode();
+ *     writer.endNode();
+ * }
+ * }</pre>
+ *
+ * @see CastStreamReader
+ */
+public final class CastStreamWriter implements Closeable {
+    private static final int NODE_HEADER_SIZE = 24;
+
+    private final SeekableByteChannel channel;
+    private final long start;
+    private final BinaryWriter writer;
+    private final CastWriter castWriter;
+    private final ByteBuffer patch = ByteBuffer
+        .allocate(NODE_HEADER_SIZE)
+        .order(ByteOrder.LITTLE_ENDIAN);
+
+    private int depth = -1;
+    private long[] nodeHashes = new long[8];
+    private long[] nodeStarts = new long[8];
+    private int[] propertyCounts = new int[8];
+    private int[] childCounts = new int[8];
+    private int rootNodeCount;
+    private boolean closed;
+
+    private CastStreamWriter(SeekableByteChannel channel) throws IOException {
+        this.channel = Objects.requireNonNull(channel);
+        this.start = channel.position();
+        this.writer = new BinaryWriter(channel);
+        this.castWriter = new CastWriter(writer);
+        castWriter.writeHeader(0);
+    }
+
+    /**
+     * Opens a writer for a new Cast file at the specified path, replacing any existing file.
+     * <p>
+     * The file header is written immediately, its root node count is filled in on {@link #close()}.
+     *
+     * @param path the path to write to
+     * @return a new writer, positioned before the first root node
+     * @throws CastException if the file cannot be opened or written
+     */
+    public static CastStreamWriter open(Path path) throws CastException {
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            try {
+                return new CastStreamWriter(channel);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        } catch (CastException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CastException("Error writing cast file", e);
+        }
+    }
+
+    /**
+     * Opens a writer for a new Cast file in the specified channel.
+     * <p>
+     * The file starts at the current position of the channel. The channel is closed together
+     * with the writer.
+     *
+     * @param channel the channel to write to
+     * @return a new writer, positioned before the first root node
+     * @throws CastException if the file header cannot be written
+     */
+    public static CastStreamWriter open(SeekableByteChannel channel) throws CastException {
+        try {
+            return new CastStreamWriter(channel);
+        } catch (CastException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CastException("Error writing cast file", e);
+        }
+    }
+
+    /**
+     * Begins a new node, as a child of the current node, or as a root node if no node is open.
+     *
+     * @param identifier the type of the node
+     * @param hash       the hash of the node, which should be unique within the file
+     * @throws CastException         if an error occurs while writing
+     * @throws IllegalStateException if the writer is closed
+     */
+    public void beginNode(CastNodeID identifier, long hash) throws CastException {
+        Objects.requireNonNull(identifier);
+        checkOpen();
+        try {
+            if (depth < 0) {
+                rootNodeCount++;
+            } else {
+                childCounts[depth]++;
+            }
+
+            if (++depth == nodeStarts.length) {
+                int newLength = depth * 2;
+                nodeHashes = Arrays.copyOf(nodeHashes, newLength);
+                nodeStarts = Arrays.copyOf(nodeStarts, newLength);
+                propertyCounts = Arrays.copyOf(propertyCounts, newLength);
+                childCounts = Arrays.copyOf(childCounts, newLength);
+            }
+            nodeHashes[depth] = hash;
+            nodeStarts[depth] = writer.position();
+            propertyCounts[depth] = 0;
+            childCounts[depth] = 0;
+
+            // The size and counts are filled in when the node ends
+            castWriter.writeNodeHeader(identifier, 0, hash, 0, 0);
+        } catch (CastException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CastException("Error writing cast file", e);
+        }
+    }
+
+    /**
+     * Adds a property to the current node.
+     * <p>
+     * Properties have to be added before the first child of the node begins. Array values are
+     * written out before this method returns, so their buffers can be reused afterwards.
+     *
+     * @param identifier the property type identifier
+     * @param name       the name of the property
+     * @param value      the property value, see {@link CastProperty#getValue()}
+     * @throws CastException         if an error occurs while writing
+     * @throws IllegalStateException if no node is open, or if the current node already has children
+     * @see CastProperty#CastProperty(CastPropertyID, String, Object)
+     */
+    public void property(CastPropertyID identifier, String name, Object value) throws CastException {
+        checkOpen();
+        CastProperty property = new CastProperty(identifier, name, value);
+        if (depth < 0) {
+            throw new IllegalStateException("Not inside a node");
+        }
+        if (childCounts[depth] > 0) {
+            throw new IllegalStateException("Properties must be added before the children of a node");
+        }
+
+        try {
+            castWriter.writeProperty(property);
+            if (value instanceof Buffer) {
+                writer.flushPending();
+            }
+            propertyCounts[depth]++;
+        } catch (CastException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CastException("Error writing cast file", e);
+        }
+    }
+
+    /**
+     * Ends the current node, and fills in its size and counts.
+     *
+     * @throws CastException         if an error occurs while writing, or the node is too large
+     * @throws IllegalStateException if no node is open
+     */
+    public void endNode() throws CastException {
+        checkOpen();
+        if (depth < 0) {
+            throw new IllegalStateException("Not inside a node");
+        }
+
+        try {
+            long nodeSize = writer.position() - nodeStarts[depth];
+            if (nodeSize > 0xFFFFFFFFL) {
+                throw new CastException("Node too large: " + nodeSize + " bytes");
+            }
+
+            patch.clear()
+                .putInt((int) nodeSize)
+                .putLong(nodeHashes[depth])
+                .putInt(propertyCounts[depth])
+                .putInt(childCounts[depth])
+                .flip();
+            patch(nodeStarts[depth] + Integer.BYTES, patch);
+            depth--;
+        } catch (CastException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CastException("Error writing cast file", e);
+        }
+    }
+
+    /**
+     * Returns the depth of the current node, where root nodes have depth {@code 0}.
+     *
+     * @return the depth of the current node, or {@code -1} if outside any node
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    private void patch(long position, ByteBuffer bytes) throws IOException {
+        if (writer.patch(position, bytes)) {
+            return;
+        }
+
+        // The bytes have already been written out, so go back to them
+        writer.flush();
+        long end = channel.position();
+        channel.position(start + position);
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        channel.position(end);
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Writer is closed");
+        }
+    }
+
+    /**
+     * Fills in the root node count, writes out the remaining data, and closes the target.
+     * <p>
+     * All nodes have to be ended before the writer is closed, otherwise the file is incomplete.
+     *
+     * @throws CastException         if an error occurs while writing
+     * @throws IllegalStateException if not all nodes have been ended, the target is closed anyway
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        Exception failure = null;
+        try {
+            if (depth >= 0) {
+                throw new IllegalStateException((depth + 1) + " node(s) were not ended");
+            }
+            patch.clear().putInt(rootNodeCount).flip();
+            patch(2 * Integer.BYTES, patch);
+            writer.flush();
+        } catch (CastException | IllegalStateException e) {
+            failure = e;
+            throw e;
+        } catch (IOException e) {
+            CastException wrapped = new CastException("Error writing cast file", e);
+            failure = wrapped;
+            throw wrapped;
+        } finally {
+            closeChannel(failure);
+        }
+    }
+
+    private void closeChannel(Exception failure) throws CastException {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            if (failure == null) {
+                throw new CastException("Error writing cast file", e);
+            }
+            failure.addSuppressed(e);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package be.twofold.tinycast;
+
+/**
+ * Options that control how a Cast file is written.
+ * <p>
+ * Instances are immutable; every {@code with*} method returns a modified copy.
+ * Start from {@link #defaults()} and chain the options that are needed:
+ * <pre>{@code
+ * CastWriteOptions options = CastWriteOptions.defaults()
+ *     .withParallel(true);
+ * }</pre>
+ *
+ * @see Cast#write(java.nio.file.Path, CastWriteOptions)
+ */
+public final class CastWriteOptions {
+    private static final CastWriteOptions DEFAULTS = new CastWriteOptions();
+
+    private boolean parallel;
+
+    private CastWriteOptions() {
+    }
+
+    /**
+     * Returns the default options, which write every node sequentially.
+     *
+     * @return the default options
+     */
+    public static CastWriteOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Returns whether sibling subtrees are serialized in parallel.
+     *
+     * @return {@code true} if subtrees are serialized in parallel
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Returns a copy of these options with parallel serialization enabled or disabled.
+     * <p>
+     * In parallel mode, the exact size of every node is computed up front, which gives the offset
+     * of each subtree in the output before anything is written. Large subtrees are then serialized
+     * concurrently in the {@linkplain java.util.concurrent.ForkJoinPool#commonPool() common pool},
+     * each with positional writes into its own region of the file. The output is identical to the
+     * one written sequentially. Parallel serialization requires positional writes, so it only
+     * applies to {@link java.nio.file.Path} and {@link java.nio.channels.FileChannel} targets, and
+     * is ignored for other channels and streams.
+     * <p>
+     * The Cast file must not be modified while it is being written.
+     *
+     * @param parallel whether subtrees should be serialized in parallel
+     * @return a copy of these options with the new setting
+     */
+    public CastWriteOptions withParallel(boolean parallel) {
+        CastWriteOptions result = copy();
+        result.parallel = parallel;
+        return result;
+    }
+
+    private CastWriteOptions copy() {
+        CastWriteOptions result = new CastWriteOptions();
+        result.parallel = parallel;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "CastWriteOptions(" +
+            "parallel=" + parallel +
+            ")";
+    }
+}
@@ -1,22 +1,64 @@
 package be.twofold.tinycast;
 
-import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.Buffer;
-import java.nio.charset.StandardCharsets;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 final class CastWriter {
+    private static final long FORK_THRESHOLD = 64 * 1024;
+
     private final BinaryWriter writer;
+    private final PositionalChannel target;
+    private final AtomicBoolean cancelled;
+    private final List<WriteTask> tasks = new ArrayList<>();
 
     CastWriter(BinaryWriter writer) {
+        this(writer, null, new AtomicBoolean());
+    }
+
+    private CastWriter(BinaryWriter writer, PositionalChannel target, AtomicBoolean cancelled) {
         this.writer = Objects.requireNonNull(writer);
+        this.target = target;
+        this.cancelled = cancelled;
+    }
+
+    private CastWriter(PositionalChannel target, AtomicBoolean cancelled) {
+        this(new BinaryWriter(target), target, cancelled);
     }
 
     static void write(Cast cast, OutputStream out) throws CastException {
-        try (BinaryWriter writer = new BinaryWriter(new BufferedOutputStream(out))) {
+        try (BinaryWriter writer = new BinaryWriter(Channels.newChannel(out))) {
+            new CastWriter(writer).write(cast);
+        } catch (CastException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CastException("Error writing cast file", e);
+        }
+    }
+
+    static void write(Cast cast, WritableByteChannel channel, CastWriteOptions options) throws CastException {
+        try {
+            if (options.isParallel() && channel instanceof FileChannel) {
+                writeParallel(cast, (FileChannel) channel);
+                return;
+            }
+
+            BinaryWriter writer = new BinaryWriter(channel);
             new CastWriter(writer).write(cast);
+            writer.flush();
         } catch (CastException e) {
             throw e;
         } catch (IOException e) {
@@ -24,44 +66,150 @@ final class CastWriter {
         }
     }
 
+    static void write(Cast cast, Path path, CastWriteOptions options) throws CastException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            write(cast, channel, options);
+        } catch (CastException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CastException("Error writing cast file", e);
+        }
+    }
+
+    static ByteBuffer toByteBuffer(Cast cast, CastBufferAllocator allocator) throws CastException {
+        long length = cast.getLength();
+        if (length > Integer.MAX_VALUE) {
+            throw new CastException("Cast file too large for a single buffer: " + length + " bytes");
+        }
+        ByteBuffer buffer = BufferAllocators.allocate(allocator, (int) length);
+        write(cast, buffer);
+        return buffer.flip();
+    }
+
+    static void write(Cast cast, ByteBuffer buffer) throws CastException {
+        long length = cast.getLength();
+        if (buffer.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+        try {
+            BinaryWriter writer = new BinaryWriter(buffer);
+            new CastWriter(writer).write(cast);
+            buffer.position(buffer.position() + (int) length);
+        } catch (CastException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CastException("Error writing cast file", e);
+        }
+    }
+
+    private static void writeParallel(Cast cast, FileChannel channel) throws IOException {
+        PositionalChannel target = new PositionalChannel(channel, channel.position());
+        CastWriter castWriter = new CastWriter(target, new AtomicBoolean());
+        Throwable failure = null;
+        try {
+            castWriter.write(cast);
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+        }
+        castWriter.finish(failure);
+        channel.position(target.position);
+    }
+
     private void write(Cast cast) throws IOException {
+        writeHeader(cast.getRootNodes().size());
+
+        for (CastNode rootNode : cast.getRootNodes()) {
+            if (target != null && rootNode.getLength() >= FORK_THRESHOLD) {
+                fork(rootNode);
+            } else {
+                writeNode(rootNode);
+            }
+        }
+    }
+
+    void writeHeader(int rootNodeCount) throws IOException {
         writer.writeInt(0x74736163);           // magic
         writer.writeInt(1);                    // version
-        writer.writeInt(cast.getRootNodes().size()); // rootNodeCount
+        writer.writeInt(rootNodeCount);        // rootNodeCount
         writer.writeInt(0);                    // flags
+    }
 
-        for (CastNode rootNode : cast.getRootNodes()) {
-            writeNode(rootNode);
-        }
+    void writeNodeHeader(CastNodeID identifier, int nodeSize, long hash, int propertyCount, int childCount) throws IOException {
+        writer.writeInt(identifier.getId());
+        writer.writeInt(nodeSize);
+        writer.writeLong(hash);
+        writer.writeInt(propertyCount);
+        writer.writeInt(childCount);
     }
 
-    private void writeNode(CastNode node) throws IOException {
-        writer.writeInt(node.getIdentifier().getId());
-        writer.writeInt(node.getLength());
-        writer.writeLong(node.getHash());
-        writer.writeInt(node.properties.size());
-        writer.writeInt(node.children.size());
+    void writeNode(CastNode node) throws IOException {
+        ForkJoinTasks.checkCancelled(cancelled);
+        writeNodeHeader(node.getIdentifier(), node.getLength(), node.getHash(), node.properties.size(), node.children.size());
 
         for (CastProperty property : node.properties.values()) {
             writeProperty(property);
         }
 
         for (CastNode child : node.children) {
-            writeNode(child);
+            if (target != null && child.getLength() >= FORK_THRESHOLD) {
+                fork(child);
+            } else {
+                writeNode(child);
+            }
+        }
+    }
+
+    private void fork(CastNode node) throws IOException {
+        // Everything before the subtree goes out first, then we skip over the region it will be written in
+        writer.flush();
+        PositionalChannel region = new PositionalChannel(target.channel, target.position);
+        target.position += Integer.toUnsignedLong(node.getLength());
+
+        WriteTask task = new WriteTask(new CastWriter(region, cancelled), node);
+        task.fork();
+        tasks.add(task);
+    }
+
+    // Flushes this writer and waits for the forked subtrees, also when writing already failed,
+    // so no task keeps writing to a channel that is about to be closed
+    private void finish(Throwable failure) throws IOException {
+        if (failure == null) {
+            try {
+                writer.flush();
+            } catch (IOException | RuntimeException e) {
+                failure = e;
+            }
         }
+        ForkJoinTasks.joinAll(tasks, cancelled, failure);
     }
 
-    private void writeProperty(CastProperty property) throws IOException {
-        byte[] rawName = property.getName().getBytes(StandardCharsets.UTF_8);
+    void writeProperty(CastProperty property) throws IOException {
+        byte[] rawName = property.getNameBytes();
         writer.writeShort(property.getIdentifier().getId()); // identifier
         writer.writeShort((short) rawName.length);           // nameSize
         writer.writeInt(property.getArrayLength());          // arrayLength
         writer.writeBytes(rawName);
+        writeValue(property);
+    }
+
+    void writeValue(CastProperty property) throws IOException {
+        if (property.getIdentifier() == CastPropertyID.STRING) {
+            writer.writeBytes(property.getStringBytes());
+            writer.writeByte((byte) 0);
+            return;
+        }
 
-        if (!(property.getValue() instanceof Buffer)) {
-            writeSingle(property.getIdentifier(), property.getValue());
+        Object value = property.getValue();
+        if (!(value instanceof Buffer)) {
+            writeSingle(property.getIdentifier(), value);
+            return;
+        }
+
+        ByteBuffer rawBytes = property.getRawBytes();
+        if (rawBytes != null) {
+            writer.writeRaw(rawBytes);
         } else {
-            writer.writeBytes(Buffers.toByteArray((Buffer) property.getValue()));
+            writer.writeBuffer((Buffer) value);
         }
     }
 
@@ -85,10 +233,6 @@ final class CastWriter {
             case DOUBLE:
                 writer.writeDouble((double) value);
                 break;
-            case STRING:
-                writer.writeBytes(value.toString().getBytes(StandardCharsets.UTF_8));
-                writer.writeByte((byte) 0);
-                break;
             case VECTOR_2: {
                 Vec2 vec = (Vec2) value;
                 writer.writeFloat(vec.getX());
@@ -114,4 +258,31 @@ final class CastWriter {
                 throw new UnsupportedOperationException();
         }
     }
+
+    private static final class WriteTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final CastWriter writer;
+        private final CastNode node;
+
+        private WriteTask(CastWriter writer, CastNode node) {
+            this.writer = writer;
+            this.node = node;
+        }
+
+        @Override
+        protected void compute() {
+            Throwable failure = null;
+            try {
+                writer.writeNode(node);
+            } catch (IOException | RuntimeException e) {
+                failure = e;
+            }
+            try {
+                writer.finish(failure);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
 }
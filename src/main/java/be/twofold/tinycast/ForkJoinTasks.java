@@ -0,0 +1,58 @@
+package be.twofold.tinycast;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+final class ForkJoinTasks {
+    private ForkJoinTasks() {
+    }
+
+    // Waits for every task, also after a failure, so none of them outlives the operation that forked it.
+    // On the first failure the cancelled flag is set, which the tasks check to stop early. The failure
+    // is rethrown once all tasks are done, with the failures of the other tasks added as suppressed.
+    static void joinAll(List<? extends ForkJoinTask<?>> tasks, AtomicBoolean cancelled, Throwable failure) throws IOException {
+        if (failure != null) {
+            cancelled.set(true);
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.quietlyJoin();
+            Throwable exception = task.getException();
+            if (exception == null || exception instanceof CancellationException) {
+                continue;
+            }
+            if (exception instanceof UncheckedIOException) {
+                exception = exception.getCause();
+            }
+            if (failure == null || failure instanceof CancellationException) {
+                // A task that only noticed the cancellation must not hide the failure that caused it
+                failure = exception;
+                cancelled.set(true);
+            } else if (failure != exception) {
+                failure.addSuppressed(exception);
+            }
+        }
+
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw new IOException(failure);
+        }
+    }
+
+    static void checkCancelled(AtomicBoolean cancelled) {
+        if (cancelled.get()) {
+            throw new CancellationException();
+        }
+    }
+}
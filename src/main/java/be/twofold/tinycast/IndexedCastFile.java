@@ -0,0 +1,195 @@
+package be.twofold.tinycast;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Random access to the nodes of a Cast file on disk.
+ * <p>
+ * An indexed file uses a {@link CastIndex} to seek straight to a node, and decodes only that node
+ * and its children. This makes it possible to load individual nodes on demand from files that are
+ * too large to read in full:
+ * <pre>{@code
+ * try (IndexedCastFile file = IndexedCastFile.open(path)) {
+ *     Optional<CastNodes.Material> material = file.load(hash, CastNodes.Material.class);
+ * }
+ * }</pre>
+ * Loaded nodes are independent of each other and of the file, and can be modified freely.
+ * New nodes that are created on them get hashes that are unique within the whole file.
+ * <p>
+ * Loading is thread-safe, so multiple nodes can be loaded concurrently.
+ */
+public final class IndexedCastFile implements Closeable {
+    private final FileChannel channel;
+    private final boolean closeChannel;
+    private final CastIndex index;
+    private final MappedBinaryReader source;
+    private final AtomicLong hasher;
+
+    private IndexedCastFile(FileChannel channel, boolean closeChannel, CastIndex index) throws IOException {
+        this.channel = Objects.requireNonNull(channel);
+        this.closeChannel = closeChannel;
+        this.index = Objects.requireNonNull(index);
+        if (index.getSourceLength() != channel.size()) {
+            throw new CastException("Index does not match file, expected " + index.getSourceLength() + " bytes but got " + channel.size());
+        }
+        this.source = new MappedBinaryReader(channel);
+
+        long maxHash = 0;
+        for (int i = 0; i < index.size(); i++) {
+            if (Long.compareUnsigned(index.getHash(i), maxHash) > 0) {
+                maxHash = index.getHash(i);
+            }
+        }
+        this.hasher = new AtomicLong(maxHash + 1);
+    }
+
+    /**
+     * Opens the Cast file at the specified path, building its index.
+     *
+     * @param path the path of the Cast file
+     * @return the opened file
+     * @throws CastException if an error occurs while reading or parsing the Cast file
+     */
+    public static IndexedCastFile open(Path path) throws CastException {
+        return open(path, null);
+    }
+
+    /**
+     * Opens the Cast file at the specified path, using a previously built index.
+     *
+     * @param path  the path of the Cast file
+     * @param index the index of the file, typically loaded from a sidecar file,
+     *              or {@code null} to build it
+     * @return the opened file
+     * @throws CastException if an error occurs while reading the Cast file,
+     *                       or if the index does not match the file
+     */
+    public static IndexedCastFile open(Path path, CastIndex index) throws CastException {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            return new IndexedCastFile(channel, true, index != null ? index : CastIndex.build(channel));
+        } catch (IOException e) {
+            closeQuietly(channel, e);
+            throw e instanceof CastException
+                ? (CastException) e
+                : new CastException("Error reading cast file", e);
+        }
+    }
+
+    /**
+     * Opens the Cast file in the specified channel, building its index.
+     * <p>
+     * The channel is not closed when the indexed file is closed.
+     *
+     * @param channel the file channel to read from
+     * @return the opened file
+     * @throws CastException if an error occurs while reading or parsing the Cast file
+     */
+    public static IndexedCastFile open(FileChannel channel) throws CastException {
+        return open(channel, CastIndex.build(channel));
+    }
+
+    /**
+     * Opens the Cast file in the specified channel, using a previously built index.
+     * <p>
+     * The channel is not closed when the indexed file is closed.
+     *
+     * @param channel the file channel to read from
+     * @param index   the index of the file
+     * @return the opened file
+     * @throws CastException if an error occurs while reading the Cast file,
+     *                       or if the index does not match the file
+     */
+    public static IndexedCastFile open(FileChannel channel, CastIndex index) throws CastException {
+        try {
+            return new IndexedCastFile(channel, false, index);
+        } catch (CastException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CastException("Error reading cast file", e);
+        }
+    }
+
+    /**
+     * Returns the index of this file.
+     *
+     * @return the index
+     */
+    public CastIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Loads the node with the given hash, including all its children.
+     *
+     * @param hash the hash of the node
+     * @return the node with the given hash, or empty if not found
+     * @throws CastException if an error occurs while reading the node
+     */
+    public Optional<CastNode> load(long hash) throws CastException {
+        int position = index.indexOf(hash);
+        if (position < 0) {
+            return Optional.empty();
+        }
+        return Optional.of(loadAt(position));
+    }
+
+    /**
+     * Loads the node of a specific type with the given hash, including all its children.
+     *
+     * @param hash the hash of the node
+     * @param type the expected type of the node
+     * @param <T>  the expected type of the node
+     * @return the node with the given hash cast to the expected type, or empty if not found or wrong type
+     * @throws CastException if an error occurs while reading the node
+     */
+    public <T extends CastNode> Optional<T> load(long hash, Class<T> type) throws CastException {
+        return load(hash)
+            .filter(type::isInstance)
+            .map(type::cast);
+    }
+
+    /**
+     * Loads the node at the given position in the index, including all its children.
+     *
+     * @param position the position of the node in the index
+     * @return the node
+     * @throws CastException if an error occurs while reading the node
+     */
+    public CastNode loadAt(int position) throws CastException {
+        try {
+            MappedBinaryReader reader = source.duplicate(index.getOffset(position));
+            return new CastReader(reader, CastReadOptions.defaults(), null).readNode(hasher, 0);
+        } catch (CastException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CastException("Error reading cast file", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closeChannel) {
+            channel.close();
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel, IOException cause) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+    }
+}
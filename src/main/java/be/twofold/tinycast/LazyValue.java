@@ -0,0 +1,67 @@
+package be.twofold.tinycast;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+
+final class LazyValue {
+    private final Loader loader;
+    private final CastBufferAllocator allocator;
+    private final CastPropertyID identifier;
+    private final long offset;
+    private final int arrayLength;
+    private volatile Buffer value;
+    private ByteBuffer rawBytes;
+
+    LazyValue(Loader loader, CastBufferAllocator allocator, CastPropertyID identifier, long offset, int arrayLength) {
+        this.loader = Objects.requireNonNull(loader);
+        this.allocator = allocator;
+        this.identifier = Objects.requireNonNull(identifier);
+        this.offset = offset;
+        this.arrayLength = arrayLength;
+    }
+
+    int getArrayLength() {
+        return arrayLength;
+    }
+
+    ByteBuffer getRawBytes() {
+        get();
+        return rawBytes;
+    }
+
+    Buffer get() {
+        Buffer result = value;
+        if (result == null) {
+            synchronized (this) {
+                result = value;
+                if (result == null) {
+                    result = load();
+                    value = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private Buffer load() {
+        try {
+            ByteBuffer buffer = loader.load(offset, arrayLength * identifier.getSize());
+            if (allocator != null) {
+                buffer = BufferAllocators.copy(allocator, buffer);
+            }
+            rawBytes = buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return CastReader.toArray(identifier, rawBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error loading lazy property at offset " + offset, e);
+        }
+    }
+
+    @FunctionalInterface
+    interface Loader {
+        ByteBuffer load(long offset, int length) throws IOException;
+    }
+}
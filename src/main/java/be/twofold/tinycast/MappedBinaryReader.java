@@ -0,0 +1,206 @@
+package be.twofold.tinycast;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+final class MappedBinaryReader extends BinaryReader {
+    private static final int WINDOW_SIZE = 1 << 30;
+
+    private final FileChannel channel;
+    private final long size;
+    private ByteBuffer window;
+    private long windowOffset;
+
+    MappedBinaryReader(FileChannel channel) throws IOException {
+        this(Objects.requireNonNull(channel), channel.size(), ByteBuffer.allocate(0), channel.position());
+    }
+
+    MappedBinaryReader(ByteBuffer buffer) {
+        this(null, buffer.remaining(), buffer.slice(), 0);
+    }
+
+    private MappedBinaryReader(FileChannel channel, long size, ByteBuffer window, long windowOffset) {
+        this.channel = channel;
+        this.size = size;
+        this.window = window.order(ByteOrder.LITTLE_ENDIAN);
+        this.windowOffset = windowOffset;
+    }
+
+    MappedBinaryReader duplicate(long position) {
+        MappedBinaryReader result = new MappedBinaryReader(channel, size, window.duplicate(), windowOffset);
+        result.seek(position);
+        return result;
+    }
+
+    void seek(long position) {
+        long offset = position - windowOffset;
+        if (offset >= 0 && offset <= window.limit()) {
+            window.position((int) offset);
+        } else {
+            window = ByteBuffer.allocate(0);
+            windowOffset = position;
+        }
+    }
+
+    @Override
+    long position() {
+        return windowOffset + window.position();
+    }
+
+    @Override
+    void skip(long length) throws IOException {
+        if (length <= window.remaining()) {
+            window.position(window.position() + (int) length);
+            return;
+        }
+
+        long position = position();
+        if (size - position < length) {
+            throw new EOFException("Expected " + length + " bytes but got " + (size - position));
+        }
+        window = ByteBuffer.allocate(0);
+        windowOffset = position + length;
+    }
+
+    @Override
+    byte readByte() throws IOException {
+        ensure(Byte.BYTES);
+        return window.get();
+    }
+
+    @Override
+    short readShort() throws IOException {
+        ensure(Short.BYTES);
+        return window.getShort();
+    }
+
+    @Override
+    int readInt() throws IOException {
+        ensure(Integer.BYTES);
+        return window.getInt();
+    }
+
+    @Override
+    long readLong() throws IOException {
+        ensure(Long.BYTES);
+        return window.getLong();
+    }
+
+    @Override
+    float readFloat() throws IOException {
+        ensure(Float.BYTES);
+        return window.getFloat();
+    }
+
+    @Override
+    double readDouble() throws IOException {
+        ensure(Double.BYTES);
+        return window.getDouble();
+    }
+
+    @Override
+    String readCString() throws IOException {
+        while (true) {
+            int start = window.position();
+            for (int i = start; i < window.limit(); i++) {
+                if (window.get(i) == 0) {
+                    String result = readString(i - start);
+                    window.get();
+                    return result;
+                }
+            }
+            // The terminator is beyond the current window, remap so it starts at the string
+            ensure(window.remaining() + 1);
+        }
+    }
+
+    @Override
+    void skipCString() throws IOException {
+        while (true) {
+            for (int i = window.position(); i < window.limit(); i++) {
+                if (window.get(i) == 0) {
+                    window.position(i + 1);
+                    return;
+                }
+            }
+            ensure(window.remaining() + 1);
+        }
+    }
+
+    @Override
+    String readString(int length) throws IOException {
+        ensure(length);
+        byte[] bytes = new byte[length];
+        window.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    ByteBuffer readBuffer(int length) throws IOException {
+        ensure(length);
+        ByteBuffer result = window.slice()
+            .limit(length)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        window.position(window.position() + length);
+        return result;
+    }
+
+    @Override
+    void readFloats(float[] dst, int offset, int length) throws IOException {
+        checkAvailable((long) length * Float.BYTES);
+        // Large arrays don't fit in a single window, so they are read in parts
+        while (length > 0) {
+            int count = Math.min(length, WINDOW_SIZE / Float.BYTES);
+            ensure((long) count * Float.BYTES);
+            window.asFloatBuffer().get(dst, offset, count);
+            window.position(window.position() + count * Float.BYTES);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    @Override
+    void readInts(int[] dst, int offset, int length) throws IOException {
+        checkAvailable((long) length * Integer.BYTES);
+        while (length > 0) {
+            int count = Math.min(length, WINDOW_SIZE / Integer.BYTES);
+            ensure((long) count * Integer.BYTES);
+            window.asIntBuffer().get(dst, offset, count);
+            window.position(window.position() + count * Integer.BYTES);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    private void checkAvailable(long length) throws IOException {
+        long available = size - position();
+        if (available < length) {
+            throw new EOFException("Expected " + length + " bytes but got " + Math.max(available, 0));
+        }
+    }
+
+    private void ensure(long length) throws IOException {
+        if (window.remaining() >= length) {
+            return;
+        }
+
+        long position = position();
+        long available = size - position;
+        checkAvailable(length);
+
+        long mapSize = Math.min(Math.max(length, WINDOW_SIZE), available);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, mapSize)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        windowOffset = position;
+    }
+
+    @Override
+    public void close() {
+        // The channel is owned by the caller, and the mappings are released when unreachable
+    }
+}
@@ -0,0 +1,38 @@
+package be.twofold.tinycast;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Maps a file once, so all lazy properties slice the same few mappings instead of mapping their own.
+// The windows start every STEP bytes and overlap, so any range of up to STEP bytes fits in the window
+// it starts in. Only longer ranges are handed to the fallback.
+final class MappedFile implements LazyValue.Loader {
+    private static final long STEP = 1L << 30;
+
+    private final ByteBuffer[] windows;
+    private final LazyValue.Loader fallback;
+
+    MappedFile(FileChannel channel, LazyValue.Loader fallback) throws IOException {
+        long size = channel.size();
+        this.windows = new ByteBuffer[(int) ((size + STEP - 1) / STEP)];
+        this.fallback = fallback;
+        for (int i = 0; i < windows.length; i++) {
+            long start = i * STEP;
+            windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(STEP * 2 - 1, size - start));
+        }
+    }
+
+    @Override
+    public ByteBuffer load(long offset, int length) throws IOException {
+        int index = (int) (offset / STEP);
+        if (index < windows.length) {
+            ByteBuffer window = windows[index];
+            int start = (int) (offset - index * STEP);
+            if ((long) start + length <= window.capacity()) {
+                return window.duplicate().position(start).limit(start + length).slice();
+            }
+        }
+        return fallback.load(offset, length);
+    }
+}
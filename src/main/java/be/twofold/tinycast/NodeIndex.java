@@ -0,0 +1,170 @@
+package be.twofold.tinycast;
+
+import java.util.List;
+
+// Maps hashes to the nodes of a Cast, using open addressing with linear probing on primitive keys.
+// When several nodes share a hash, the first one in depth-first order is found, like a search would.
+final class NodeIndex {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final List<CastNode> rootNodes;
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private CastNode[] values = new CastNode[INITIAL_CAPACITY];
+    private int size;
+    private boolean duplicates;
+
+    NodeIndex(List<CastNode> rootNodes) {
+        this.rootNodes = rootNodes;
+    }
+
+    CastNode get(long hash) {
+        int mask = keys.length - 1;
+        for (int slot = slot(hash); values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == hash) {
+                return values[slot];
+            }
+        }
+        return null;
+    }
+
+    // Adds the node and all its children, which must come after all indexed nodes in depth-first order,
+    // like a new root, or the nodes of a tree that is indexed in order
+    void add(CastNode node) {
+        add(node, false);
+    }
+
+    // Adds a new child and all its children, which can come before indexed nodes in depth-first order
+    void addChild(CastNode node) {
+        add(node, true);
+    }
+
+    private void add(CastNode node, boolean resolve) {
+        node.index = this;
+        CastNode existing = putIfAbsent(node);
+        if (existing != null && existing != node) {
+            duplicates = true;
+            if (resolve) {
+                // The search decides which of the nodes with this hash comes first
+                replace(find(node.getHash()));
+            }
+        }
+        for (CastNode child : node.children) {
+            add(child, resolve);
+        }
+    }
+
+    // Removes the node and all its children, the node must already be detached from the tree
+    void remove(CastNode node) {
+        node.index = null;
+        if (get(node.getHash()) == node) {
+            delete(node.getHash());
+            if (duplicates) {
+                // Another node with the same hash might have been hidden by this one
+                CastNode replacement = find(node.getHash());
+                if (replacement != null) {
+                    putIfAbsent(replacement);
+                }
+            }
+        }
+        for (CastNode child : node.children) {
+            remove(child);
+        }
+    }
+
+    private CastNode putIfAbsent(CastNode node) {
+        if (size * 2 >= keys.length) {
+            resize(keys.length * 2);
+        }
+
+        long hash = node.getHash();
+        int mask = keys.length - 1;
+        int slot = slot(hash);
+        for (; values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == hash) {
+                return values[slot];
+            }
+        }
+        keys[slot] = hash;
+        values[slot] = node;
+        size++;
+        return null;
+    }
+
+    private void replace(CastNode node) {
+        int mask = keys.length - 1;
+        int slot = slot(node.getHash());
+        while (keys[slot] != node.getHash()) {
+            slot = (slot + 1) & mask;
+        }
+        values[slot] = node;
+    }
+
+    private void delete(long hash) {
+        int mask = keys.length - 1;
+        int slot = slot(hash);
+        while (keys[slot] != hash) {
+            slot = (slot + 1) & mask;
+        }
+
+        // Shift back the entries after it, so no probe sequence is broken
+        int gap = slot;
+        for (int next = (gap + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+            int home = slot(keys[next]);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        values[gap] = null;
+        size--;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        CastNode[] oldValues = values;
+        keys = new long[capacity];
+        values = new CastNode[capacity];
+
+        int mask = capacity - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = slot(oldKeys[i]);
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private int slot(long hash) {
+        // Hashes are often sequential, so they are mixed before taking the top bits
+        long mixed = hash * 0x9E3779B97F4A7C15L;
+        return (int) (mixed >>> (Long.SIZE - Integer.numberOfTrailingZeros(keys.length)));
+    }
+
+    private CastNode find(long hash) {
+        for (CastNode root : rootNodes) {
+            CastNode result = find(root, hash);
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    private static CastNode find(CastNode node, long hash) {
+        if (node.getHash() == hash) {
+            return node;
+        }
+        for (CastNode child : node.children) {
+            CastNode result = find(child, hash);
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,34 @@
+package be.twofold.tinycast;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+// Writes at a position of its own, so several writers can share the same file
+final class PositionalChannel implements WritableByteChannel {
+    final FileChannel channel;
+    long position;
+
+    PositionalChannel(FileChannel channel, long position) {
+        this.channel = channel;
+        this.position = position;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        int written = channel.write(src, position);
+        position += written;
+        return written;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() {
+        // The channel is shared, and closed by the caller
+    }
+}
@@ -0,0 +1,269 @@
+package be.twofold.tinycast;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+final class PropertyKey {
+    // Maintained by hand from the output of TypeGenerator, array properties are marked with [].
+    // PropertyKeyTest checks that this matches cast.json.
+    static final Map<CastNodeID, List<String>> KEYS = Map.ofEntries(
+        Map.entry(CastNodeID.MODEL, List.of("n", "p", "r", "s")),
+        Map.entry(CastNodeID.MESH, List.of("n", "vp[]", "vn[]", "vt[]", "c%d[]", "u%d[]", "wb[]", "wv[]", "f[]", "cl", "ul", "mi", "sm", "m")),
+        Map.entry(CastNodeID.HAIR, List.of("n", "se[]", "pt[]", "m")),
+        Map.entry(CastNodeID.BLEND_SHAPE, List.of("n", "b", "vi[]", "vp[]", "ts[]")),
+        Map.entry(CastNodeID.BONE, List.of("n", "p", "ssc", "lp", "lr", "wp", "wr", "s")),
+        Map.entry(CastNodeID.IK_HANDLE, List.of("n", "sb", "eb", "tb", "to", "pv", "pb", "tr")),
+        Map.entry(CastNodeID.CONSTRAINT, List.of("n", "ct", "cb", "tb", "mo", "co", "wt", "sx", "sy", "sz")),
+        Map.entry(CastNodeID.ANIMATION, List.of("n", "fr", "lo")),
+        Map.entry(CastNodeID.CURVE, List.of("nn", "kp", "kb[]", "kv[]", "m", "ab")),
+        Map.entry(CastNodeID.CURVE_MODE_OVERRIDE, List.of("nn", "m", "ot", "or", "os")),
+        Map.entry(CastNodeID.NOTIFICATION_TRACK, List.of("n", "kb[]")),
+        Map.entry(CastNodeID.MATERIAL, List.of("n", "t", "albedo", "diffuse", "normal", "specular", "gloss", "roughness", "emissive", "emask", "ao", "cavity", "aniso", "extra%d")),
+        Map.entry(CastNodeID.FILE, List.of("p")),
+        Map.entry(CastNodeID.COLOR, List.of("n", "cs", "rgba")),
+        Map.entry(CastNodeID.INSTANCE, List.of("n", "rf", "p", "r", "s")),
+        Map.entry(CastNodeID.METADATA, List.of("a", "s", "up", "sr"))
+    );
+
+    // Numbered keys like "c%d" are precomputed up to this index, higher ones are matched on the prefix
+    private static final int NUMBERED_KEYS = 8;
+    private static final Table[] TABLES = buildTables();
+
+    private final String name;
+    private final boolean array;
+    private final int slot;
+
+    private PropertyKey(String name, boolean array, int slot) {
+        this.name = name;
+        this.array = array;
+        this.slot = slot;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    boolean isArray() {
+        return array;
+    }
+
+    // Index of the name in slotNames for the node type, or -1 if it has no slot
+    int getSlot() {
+        return slot;
+    }
+
+    static long pack(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Long.BYTES) {
+            throw new IllegalArgumentException("Name too long to pack: " + name);
+        }
+        long result = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            result |= (bytes[i] & 0xFFL) << (i * Byte.SIZE);
+        }
+        return result;
+    }
+
+    static String unpack(long packed, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (packed >>> (i * Byte.SIZE));
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Known names return a shared instance, so only unknown names allocate
+    static PropertyKey lookup(CastNodeID typeId, long packed, int length) {
+        Table table = TABLES[typeId.ordinal()];
+        int slot = table.slot(packed);
+        PropertyKey key = table.keys[slot];
+        if (key != null && table.packed[slot] == packed && table.lengths[slot] == length) {
+            return key;
+        }
+        return of(typeId, unpack(packed, length));
+    }
+
+    // Known names of a node type, including the precomputed numbered ones, in a fixed order.
+    // The same array is returned for every call, so it can be compared by identity.
+    static String[] slotNames(CastNodeID typeId) {
+        return TABLES[typeId.ordinal()].slotNames;
+    }
+
+    // The UTF-8 encoded slotNames, shared like the names themselves, so they must not be modified
+    static byte[][] slotNameBytes(CastNodeID typeId) {
+        return TABLES[typeId.ordinal()].slotNameBytes;
+    }
+
+    // Index of the name in slotNames, or -1 if it has no slot
+    static int slotOf(CastNodeID typeId, Object name) {
+        return TABLES[typeId.ordinal()].slotOf(name);
+    }
+
+    static PropertyKey of(CastNodeID typeId, String name) {
+        Table table = TABLES[typeId.ordinal()];
+        for (PropertyKey key : table.longKeys) {
+            if (key.name.equals(name)) {
+                return key;
+            }
+        }
+        for (int i = 0; i < table.prefixes.length; i++) {
+            if (isNumbered(name, table.prefixes[i])) {
+                return new PropertyKey(name, table.prefixArrays[i], -1);
+            }
+        }
+        return new PropertyKey(name, false, -1);
+    }
+
+    private static boolean isNumbered(String name, String prefix) {
+        if (name.length() <= prefix.length() || !name.startsWith(prefix)) {
+            return false;
+        }
+        for (int i = prefix.length(); i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Table[] buildTables() {
+        Table[] tables = new Table[CastNodeID.values().length];
+        for (CastNodeID typeId : CastNodeID.values()) {
+            List<PropertyKey> keys = new ArrayList<>();
+            List<PropertyKey> longKeys = new ArrayList<>();
+            List<PropertyKey> prefixes = new ArrayList<>();
+            List<String> slotNames = new ArrayList<>();
+            for (String key : KEYS.getOrDefault(typeId, List.of())) {
+                boolean array = key.endsWith("[]");
+                String name = array ? key.substring(0, key.length() - 2) : key;
+                if (name.endsWith("%d")) {
+                    String prefix = name.substring(0, name.length() - 2);
+                    prefixes.add(new PropertyKey(prefix, array, -1));
+                    for (int i = 0; i < NUMBERED_KEYS; i++) {
+                        PropertyKey numbered = new PropertyKey(prefix + i, array, slotNames.size());
+                        keys.add(numbered);
+                        slotNames.add(numbered.name);
+                    }
+                } else if (name.length() > Long.BYTES) {
+                    longKeys.add(new PropertyKey(name, array, slotNames.size()));
+                    slotNames.add(name);
+                } else {
+                    keys.add(new PropertyKey(name, array, slotNames.size()));
+                    slotNames.add(name);
+                }
+            }
+            tables[typeId.ordinal()] = new Table(keys, longKeys, prefixes, slotNames);
+        }
+        return tables;
+    }
+
+    @Override
+    public String toString() {
+        return name + (array ? "[]" : "");
+    }
+
+    private static final class Table {
+        private final long[] packed;
+        private final byte[] lengths;
+        private final PropertyKey[] keys;
+        private final PropertyKey[] longKeys;
+        private final String[] prefixes;
+        private final boolean[] prefixArrays;
+        private final String[] slotNames;
+        private final byte[][] slotNameBytes;
+        private final byte[] slotIndex;
+        private final long multiplier;
+        private final int shift;
+
+        private Table(List<PropertyKey> entries, List<PropertyKey> longEntries, List<PropertyKey> numbered, List<String> names) {
+            // Search for a multiplier that maps every key to its own slot
+            int bits = 1;
+            while ((1 << bits) < entries.size() * 2) {
+                bits++;
+            }
+            long candidate = 0x9E3779B97F4A7C15L;
+            PropertyKey[] slots;
+            for (int attempt = 1; ; attempt++) {
+                slots = tryPlace(entries, candidate, Long.SIZE - bits);
+                if (slots != null) {
+                    break;
+                }
+                candidate = candidate * 0xBF58476D1CE4E5B9L + 0x94D049BB133111EBL | 1;
+                if (attempt % 1000 == 0) {
+                    bits++;
+                }
+            }
+
+            long[] packedSlots = new long[slots.length];
+            byte[] lengthSlots = new byte[slots.length];
+            for (int i = 0; i < slots.length; i++) {
+                if (slots[i] != null) {
+                    packedSlots[i] = pack(slots[i].name);
+                    lengthSlots[i] = (byte) slots[i].name.getBytes(StandardCharsets.UTF_8).length;
+                }
+            }
+
+            this.packed = packedSlots;
+            this.lengths = lengthSlots;
+            this.keys = slots;
+            this.longKeys = longEntries.toArray(new PropertyKey[0]);
+            this.multiplier = candidate;
+            this.shift = Long.SIZE - bits;
+            this.prefixes = new String[numbered.size()];
+            this.prefixArrays = new boolean[numbered.size()];
+            for (int i = 0; i < numbered.size(); i++) {
+                prefixes[i] = numbered.get(i).name;
+                prefixArrays[i] = numbered.get(i).array;
+            }
+            this.slotNames = names.toArray(new String[0]);
+            this.slotNameBytes = new byte[slotNames.length][];
+            for (int i = 0; i < slotNames.length; i++) {
+                slotNameBytes[i] = slotNames[i].getBytes(StandardCharsets.UTF_8);
+            }
+
+            // Open addressing on the cached string hash, storing the slot plus one, so zero is empty
+            int capacity = Integer.highestOneBit(Math.max(slotNames.length, 1) * 4);
+            this.slotIndex = new byte[capacity];
+            for (int i = 0; i < slotNames.length; i++) {
+                int index = slotNames[i].hashCode() & (capacity - 1);
+                while (slotIndex[index] != 0) {
+                    index = (index + 1) & (capacity - 1);
+                }
+                slotIndex[index] = (byte) (i + 1);
+            }
+        }
+
+        private int slotOf(Object name) {
+            if (!(name instanceof String)) {
+                return -1;
+            }
+            int mask = slotIndex.length - 1;
+            for (int index = name.hashCode() & mask; slotIndex[index] != 0; index = (index + 1) & mask) {
+                int slot = slotIndex[index] - 1;
+                if (slotNames[slot].equals(name)) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        private int slot(long packed) {
+            return (int) ((packed * multiplier) >>> shift);
+        }
+
+        private static PropertyKey[] tryPlace(List<PropertyKey> entries, long multiplier, int shift) {
+            PropertyKey[] slots = new PropertyKey[1 << (Long.SIZE - shift)];
+            for (PropertyKey entry : entries) {
+                int slot = (int) ((pack(entry.name) * multiplier) >>> shift);
+                if (slots[slot] != null) {
+                    return null;
+                }
+                slots[slot] = entry;
+            }
+            return slots;
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package be.twofold.tinycast;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+// Stores the properties of a node in a few parallel arrays, one element per property, in insertion order.
+// Properties with a name known for the node type are kept without their CastProperty: only the slot of
+// the name, the type and the value are stored, and numbers are stored unboxed. Only properties with an
+// unknown name keep their CastProperty. A CastProperty is created again when a property is looked up,
+// which is cheap compared to keeping one, a boxed number and a map entry around for every property.
+final class PropertyMap extends AbstractMap<String, CastProperty> {
+    private static final short UNKNOWN = -1;
+    private static final CastPropertyID[] IDENTIFIERS = CastPropertyID.values();
+
+    private final CastNodeID identifier;
+    private final String[] names;
+    private final byte[][] nameBytes;
+    private final int initialCapacity;
+
+    private short[] slots;
+    private byte[] types;
+    private Object[] objects;
+    private long[] scalars;
+    private ByteBuffer[] rawBytes;
+    private int size;
+
+    PropertyMap(CastNodeID identifier) {
+        this(identifier, 0);
+    }
+
+    // The expected size comes from the file, so it is limited to what a valid node would need
+    PropertyMap(CastNodeID identifier, int expectedSize) {
+        this.identifier = identifier;
+        this.names = PropertyKey.slotNames(identifier);
+        this.nameBytes = PropertyKey.slotNameBytes(identifier);
+        this.initialCapacity = Math.min(Math.max(expectedSize, 0), names.length + 1);
+    }
+
+    static PropertyMap copyOf(CastNodeID identifier, Map<String, CastProperty> properties) {
+        if (properties instanceof PropertyMap && ((PropertyMap) properties).identifier == identifier) {
+            // Maps built by the reader are not used afterwards, so they are taken over as is
+            return (PropertyMap) properties;
+        }
+        PropertyMap result = new PropertyMap(identifier, properties.size());
+        result.putAll(properties);
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public CastProperty get(Object key) {
+        int index = indexOf(key);
+        return index >= 0 ? property(index) : null;
+    }
+
+    // Skips the name lookup for keys that were already resolved by the reader
+    CastProperty put(PropertyKey key, CastProperty value) {
+        int slot = key.getSlot();
+        if (slot >= 0 && slot < names.length && names[slot] == key.getName()) {
+            checkName(key.getName(), value);
+            return put(slot, value);
+        }
+        return put(key.getName(), value);
+    }
+
+    @Override
+    public CastProperty put(String key, CastProperty value) {
+        checkName(key, value);
+        return put(PropertyKey.slotOf(identifier, key), value);
+    }
+
+    private CastProperty put(int slot, CastProperty value) {
+        int index = slot >= 0 ? indexOfSlot(slot) : indexOfUnknown(value.getName());
+        CastProperty previous = null;
+        if (index >= 0) {
+            previous = property(index);
+        } else {
+            if (slots == null || size == slots.length) {
+                grow();
+            }
+            index = size++;
+        }
+        set(index, slot, value);
+        return previous;
+    }
+
+    @Override
+    public CastProperty remove(Object key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+
+        CastProperty previous = property(index);
+        int moved = size - index - 1;
+        System.arraycopy(slots, index + 1, slots, index, moved);
+        System.arraycopy(types, index + 1, types, index, moved);
+        System.arraycopy(objects, index + 1, objects, index, moved);
+        if (scalars != null) {
+            System.arraycopy(scalars, index + 1, scalars, index, moved);
+        }
+        if (rawBytes != null) {
+            System.arraycopy(rawBytes, index + 1, rawBytes, index, moved);
+            rawBytes[size - 1] = null;
+        }
+        objects[size - 1] = null;
+        size--;
+        return previous;
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new Itr<>() {
+                    @Override
+                    String map(int index) {
+                        return name(index);
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsKey(o);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Collection<CastProperty> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<CastProperty> iterator() {
+                return new Itr<>() {
+                    @Override
+                    CastProperty map(int index) {
+                        return property(index);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<String, CastProperty>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, CastProperty>> iterator() {
+                return new Itr<>() {
+                    @Override
+                    Entry<String, CastProperty> map(int index) {
+                        return new SimpleImmutableEntry<>(name(index), property(index));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private static void checkName(String key, CastProperty value) {
+        if (!key.equals(value.getName())) {
+            throw new IllegalArgumentException("Key '" + key + "' does not match property '" + value.getName() + "'");
+        }
+    }
+
+    private int indexOf(Object key) {
+        int slot = PropertyKey.slotOf(identifier, key);
+        if (slot >= 0) {
+            return indexOfSlot(slot);
+        }
+        return key instanceof String ? indexOfUnknown((String) key) : -1;
+    }
+
+    private int indexOfSlot(int slot) {
+        for (int i = 0; i < size; i++) {
+            if (slots[i] == slot) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOfUnknown(String name) {
+        for (int i = 0; i < size; i++) {
+            if (slots[i] == UNKNOWN && ((CastProperty) objects[i]).getName().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String name(int index) {
+        int slot = slots[index];
+        return slot != UNKNOWN ? names[slot] : ((CastProperty) objects[index]).getName();
+    }
+
+    private CastProperty property(int index) {
+        int slot = slots[index];
+        if (slot == UNKNOWN) {
+            return (CastProperty) objects[index];
+        }
+
+        CastPropertyID type = IDENTIFIERS[types[index]];
+        Object value = objects[index] != null ? objects[index] : box(type, scalars[index]);
+        ByteBuffer raw = rawBytes != null ? rawBytes[index] : null;
+        return new CastProperty(type, names[slot], nameBytes[slot], value, raw);
+    }
+
+    private void set(int index, int slot, CastProperty property) {
+        slots[index] = (short) slot;
+        types[index] = (byte) property.getIdentifier().ordinal();
+        if (slot == UNKNOWN) {
+            objects[index] = property;
+            setRawBytes(index, null);
+            return;
+        }
+
+        Object value = property.getStoredValue();
+        if (isScalar(property.getIdentifier(), value)) {
+            if (scalars == null) {
+                scalars = new long[slots.length];
+            }
+            scalars[index] = unbox(value);
+            objects[index] = null;
+        } else {
+            objects[index] = value;
+        }
+        setRawBytes(index, property.getStoredRawBytes());
+    }
+
+    private void setRawBytes(int index, ByteBuffer raw) {
+        if (raw != null && rawBytes == null) {
+            rawBytes = new ByteBuffer[slots.length];
+        }
+        if (rawBytes != null) {
+            rawBytes[index] = raw;
+        }
+    }
+
+    private void grow() {
+        int capacity = slots == null ? Math.max(initialCapacity, 1) : slots.length * 2;
+        slots = slots == null ? new short[capacity] : Arrays.copyOf(slots, capacity);
+        types = types == null ? new byte[capacity] : Arrays.copyOf(types, capacity);
+        objects = objects == null ? new Object[capacity] : Arrays.copyOf(objects, capacity);
+        if (scalars != null) {
+            scalars = Arrays.copyOf(scalars, capacity);
+        }
+        if (rawBytes != null) {
+            rawBytes = Arrays.copyOf(rawBytes, capacity);
+        }
+    }
+
+    // Only the box the writer expects for the type is unboxed, anything else is kept as is
+    private static boolean isScalar(CastPropertyID identifier, Object value) {
+        switch (identifier) {
+            case BYTE:
+                return value instanceof Byte;
+            case SHORT:
+                return value instanceof Short;
+            case INTEGER_32:
+                return value instanceof Integer;
+            case INTEGER_64:
+                return value instanceof Long;
+            case FLOAT:
+                return value instanceof Float;
+            case DOUBLE:
+                return value instanceof Double;
+            default:
+                return false;
+        }
+    }
+
+    private static long unbox(Object value) {
+        if (value instanceof Float) {
+            return Float.floatToRawIntBits((Float) value);
+        }
+        if (value instanceof Double) {
+            return Double.doubleToRawLongBits((Double) value);
+        }
+        return ((Number) value).longValue();
+    }
+
+    private static Object box(CastPropertyID identifier, long bits) {
+        switch (identifier) {
+            case BYTE:
+                return (byte) bits;
+            case SHORT:
+                return (short) bits;
+            case INTEGER_32:
+                return (int) bits;
+            case INTEGER_64:
+                return bits;
+            case FLOAT:
+                return Float.intBitsToFloat((int) bits);
+            case DOUBLE:
+                return Double.longBitsToDouble(bits);
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    private abstract class Itr<T> implements Iterator<T> {
+        private int index;
+
+        abstract T map(int index);
+
+        @Override
+        public boolean hasNext() {
+            return index < size;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return map(index++);
+        }
+    }
+}
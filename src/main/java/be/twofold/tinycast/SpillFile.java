@@ -0,0 +1,46 @@
+package be.twofold.tinycast;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+final class SpillFile {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private SpillFile() {
+    }
+
+    // Copies the next bytes of the reader to a temporary file, and maps it.
+    // The file is deleted as soon as the channel is closed, the mapping stays valid.
+    static ByteBuffer spill(BinaryReader reader, int length) throws IOException {
+        Path path = Files.createTempFile("tinycast", ".spill");
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+        } catch (IOException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+
+        try (channel) {
+            ByteBuffer chunk = ByteBuffer.allocateDirect(Math.min(length, CHUNK_SIZE));
+            int remaining = length;
+            while (remaining > 0) {
+                chunk.clear().limit(Math.min(remaining, chunk.capacity()));
+                reader.read(chunk);
+                chunk.flip();
+                while (chunk.hasRemaining()) {
+                    channel.write(chunk);
+                }
+                remaining -= chunk.limit();
+            }
+            return channel
+                .map(FileChannel.MapMode.READ_WRITE, 0, length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package be.twofold.tinycast;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+final class StreamBinaryReader extends BinaryReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private ByteBuffer buffer = ByteBuffer
+        .allocate(BUFFER_SIZE)
+        .order(ByteOrder.LITTLE_ENDIAN)
+        .limit(0);
+    private byte[] scratch = new byte[0];
+    private long bufferOffset;
+
+    StreamBinaryReader(InputStream in) {
+        this.in = Objects.requireNonNull(in);
+    }
+
+    @Override
+    long position() {
+        return bufferOffset + buffer.position();
+    }
+
+    @Override
+    void skip(long length) throws IOException {
+        if (length <= buffer.remaining()) {
+            buffer.position(buffer.position() + (int) length);
+            return;
+        }
+
+        long remaining = length - buffer.remaining();
+        bufferOffset += buffer.limit();
+        buffer.limit(0);
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped > 0) {
+                bufferOffset += skipped;
+                remaining -= skipped;
+                continue;
+            }
+
+            // Some streams can't skip, read through the buffer instead
+            fill(1);
+            int count = (int) Math.min(buffer.remaining(), remaining);
+            buffer.position(count);
+            remaining -= count;
+            if (remaining > 0) {
+                bufferOffset += buffer.limit();
+                buffer.limit(0);
+            }
+        }
+    }
+
+    @Override
+    byte readByte() throws IOException {
+        fill(Byte.BYTES);
+        return buffer.get();
+    }
+
+    @Override
+    short readShort() throws IOException {
+        fill(Short.BYTES);
+        return buffer.getShort();
+    }
+
+    @Override
+    int readInt() throws IOException {
+        fill(Integer.BYTES);
+        return buffer.getInt();
+    }
+
+    @Override
+    long readLong() throws IOException {
+        fill(Long.BYTES);
+        return buffer.getLong();
+    }
+
+    @Override
+    float readFloat() throws IOException {
+        fill(Float.BYTES);
+        return buffer.getFloat();
+    }
+
+    @Override
+    double readDouble() throws IOException {
+        fill(Double.BYTES);
+        return buffer.getDouble();
+    }
+
+    @Override
+    String readCString() throws IOException {
+        int length = findTerminator();
+        String result = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length + 1);
+        return result;
+    }
+
+    @Override
+    void skipCString() throws IOException {
+        int length = findTerminator();
+        buffer.position(buffer.position() + length + 1);
+    }
+
+    private int findTerminator() throws IOException {
+        int start = 0;
+        while (true) {
+            byte[] array = buffer.array();
+            int position = buffer.position();
+            for (int i = position + start, limit = buffer.limit(); i < limit; i++) {
+                if (array[i] == 0) {
+                    return i - position;
+                }
+            }
+            start = buffer.remaining();
+            if (start == buffer.capacity()) {
+                // The string doesn't fit, so grow the buffer
+                ByteBuffer newBuffer = ByteBuffer
+                    .allocate(buffer.capacity() * 2)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+                bufferOffset += buffer.position();
+                buffer = newBuffer.put(buffer).flip();
+            }
+            fill(start + 1);
+        }
+    }
+
+    @Override
+    String readString(int length) throws IOException {
+        if (length <= buffer.capacity()) {
+            fill(length);
+            String result = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return result;
+        }
+        byte[] bytes = new byte[length];
+        readFully(bytes, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    ByteBuffer readBuffer(int length) throws IOException {
+        byte[] bytes = new byte[length];
+        readFully(bytes, length);
+        return ByteBuffer.wrap(bytes)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    ByteBuffer readTransientBuffer(int length) throws IOException {
+        if (length <= buffer.capacity()) {
+            // Valid until the next read, so the window itself can be handed out
+            fill(length);
+            ByteBuffer result = buffer.slice()
+                .limit(length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            buffer.position(buffer.position() + length);
+            return result;
+        }
+
+        if (scratch.length < length) {
+            scratch = new byte[length];
+        }
+        readFully(scratch, length);
+        return ByteBuffer.wrap(scratch, 0, length)
+            .slice()
+            .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    void read(ByteBuffer dst) throws IOException {
+        while (dst.hasRemaining()) {
+            fill(1);
+            int count = Math.min(dst.remaining(), buffer.remaining());
+            dst.put(buffer.array(), buffer.position(), count);
+            buffer.position(buffer.position() + count);
+        }
+    }
+
+    @Override
+    void readFloats(float[] dst, int offset, int length) throws IOException {
+        int done = 0;
+        while (done < length) {
+            fill(Float.BYTES);
+            int count = Math.min(length - done, buffer.remaining() / Float.BYTES);
+            buffer.asFloatBuffer().get(dst, offset + done, count);
+            buffer.position(buffer.position() + count * Float.BYTES);
+            done += count;
+        }
+    }
+
+    @Override
+    void readInts(int[] dst, int offset, int length) throws IOException {
+        int done = 0;
+        while (done < length) {
+            fill(Integer.BYTES);
+            int count = Math.min(length - done, buffer.remaining() / Integer.BYTES);
+            buffer.asIntBuffer().get(dst, offset + done, count);
+            buffer.position(buffer.position() + count * Integer.BYTES);
+            done += count;
+        }
+    }
+
+    private void fill(int length) throws IOException {
+        if (buffer.remaining() >= length) {
+            return;
+        }
+
+        bufferOffset += buffer.position();
+        buffer.compact();
+        while (buffer.position() < length) {
+            int read = in.read(buffer.array(), buffer.position(), buffer.remaining());
+            if (read < 0) {
+                int available = buffer.position();
+                buffer.flip();
+                throw new EOFException("Expected " + length + " bytes but got " + available);
+            }
+            buffer.position(buffer.position() + read);
+        }
+        buffer.flip();
+    }
+
+    private void readFully(byte[] dst, int length) throws IOException {
+        int buffered = Math.min(buffer.remaining(), length);
+        buffer.get(dst, 0, buffered);
+
+        int remaining = length - buffered;
+        if (remaining == 0) {
+            return;
+        }
+        if (remaining < buffer.capacity()) {
+            fill(remaining);
+            buffer.get(dst, buffered, remaining);
+            return;
+        }
+
+        // Large reads bypass the buffer, which is empty at this point
+        int read = in.readNBytes(dst, buffered, remaining);
+        bufferOffset += read;
+        if (read != remaining) {
+            throw new EOFException("Expected " + length + " bytes but got " + (buffered + read));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,65 @@
+package be.twofold.tinycast;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BuffersTest {
+    @Test
+    void testShrinkIntsToBytes() {
+        IntBuffer buffer = IntBuffer.wrap(new int[]{7, 0, 1, 255, 2}).position(1);
+
+        assertThat(Buffers.shrink(buffer))
+            .isEqualTo(ByteBuffer.wrap(new byte[]{0, 1, (byte) 255, 2}));
+    }
+
+    @Test
+    void testShrinkIntsToShorts() {
+        IntBuffer buffer = IntBuffer.wrap(new int[]{0, 256, 65535});
+
+        assertThat(Buffers.shrink(buffer))
+            .isEqualTo(ShortBuffer.wrap(new short[]{0, 256, (short) 65535}));
+    }
+
+    @Test
+    void testShrinkKeepsLargeValues() {
+        IntBuffer ints = IntBuffer.wrap(new int[]{0, 65536});
+        ShortBuffer shorts = ShortBuffer.wrap(new short[]{0, 256});
+
+        assertThat(Buffers.shrink(ints)).isSameAs(ints);
+        assertThat(Buffers.shrink(shorts)).isSameAs(shorts);
+        assertThat(Buffers.shrink(IntBuffer.wrap(new int[]{-1}))).isInstanceOf(IntBuffer.class);
+        assertThat(Buffers.shrink(ShortBuffer.wrap(new short[]{-1}))).isInstanceOf(ShortBuffer.class);
+    }
+
+    @Test
+    void testShrinkWithoutArray() {
+        // Larger than a chunk, so the values are copied out in several parts
+        int[] values = new int[20000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i % 1000;
+        }
+        IntBuffer direct = ByteBuffer.allocateDirect(values.length * Integer.BYTES).asIntBuffer().put(values).flip();
+        IntBuffer readOnly = IntBuffer.wrap(values).asReadOnlyBuffer();
+
+        ShortBuffer expected = ShortBuffer.allocate(values.length);
+        for (int value : values) {
+            expected.put((short) value);
+        }
+        assertThat(Buffers.shrink(direct)).isEqualTo(expected.flip());
+        assertThat(Buffers.shrink(readOnly)).isEqualTo(expected);
+    }
+
+    @Test
+    void testShrinkWithKnownMax() {
+        IntBuffer buffer = IntBuffer.wrap(new int[]{0, 1, 2});
+
+        assertThat(Buffers.shrink(buffer, 2)).isInstanceOf(ByteBuffer.class);
+        assertThat(Buffers.shrink(buffer, 300)).isInstanceOf(ShortBuffer.class);
+        assertThat(Buffers.shrink(buffer, 70000)).isSameAs(buffer);
+    }
+}
@@ -0,0 +1,42 @@
+package be.twofold.tinycast;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CastBufferAllocatorTest {
+    @Test
+    void testPooledReusesBuffersAfterReset() {
+        CastBufferAllocator allocator = CastBufferAllocator.pooled();
+        ByteBuffer first = allocator.allocate(100);
+        ByteBuffer second = allocator.allocate(100);
+        assertThat(first.limit()).isEqualTo(100);
+        assertThat(first).isNotSameAs(second);
+
+        allocator.reset();
+        ByteBuffer third = allocator.allocate(120);
+        assertThat(third).isIn(first, second);
+        assertThat(third.position()).isZero();
+        assertThat(third.limit()).isEqualTo(120);
+    }
+
+    @Test
+    void testArena() {
+        CastBufferAllocator allocator = CastBufferAllocator.arena(ByteBuffer.allocate(32));
+        ByteBuffer first = allocator.allocate(5);
+        ByteBuffer second = allocator.allocate(8);
+        first.put(0, (byte) 1);
+        second.put(0, (byte) 2);
+        assertThat(first.get(0)).isEqualTo((byte) 1);
+        assertThat(second.capacity()).isEqualTo(8);
+
+        assertThatThrownBy(() -> allocator.allocate(24))
+            .isInstanceOf(IllegalStateException.class);
+
+        allocator.reset();
+        assertThat(allocator.allocate(24).get(0)).isEqualTo((byte) 1);
+    }
+}
@@ -0,0 +1,126 @@
+package be.twofold.tinycast;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CastFileEditorTest {
+    private static final long MODEL_HASH = 0x5A4C524E454C4157L;
+    private static final long MESH_HASH = 0x5A4C524E454C4158L;
+
+    @Test
+    void testSetProperty(@TempDir Path tempDir) throws Exception {
+        byte[] bytes = Base64.getDecoder().decode(CastTest.BASIC_CAST);
+        Path path = tempDir.resolve("edit.cast");
+        Files.write(path, bytes);
+
+        try (CastFileEditor editor = CastFileEditor.open(path)) {
+            assertThat(editor.setProperty(MODEL_HASH, "n", "Triangl3")).isTrue();
+            assertThat(editor.setProperty(MESH_HASH, "f", ByteBuffer.wrap(new byte[]{2, 1, 0}))).isTrue();
+            assertThat(editor.setProperty(MESH_HASH, "x", "Missing")).isFalse();
+            assertThat(editor.setProperty(-1L, "n", "Missing")).isFalse();
+
+            assertThatThrownBy(() -> editor.setProperty(MODEL_HASH, "n", "Square"))
+                .isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> editor.setProperty(MESH_HASH, "f", ByteBuffer.wrap(new byte[]{0, 1, 2, 3})))
+                .isInstanceOf(IllegalArgumentException.class);
+        }
+
+        byte[] edited = Files.readAllBytes(path);
+        assertThat(edited).hasSameSizeAs(bytes);
+        assertThat(countDifferences(bytes, edited)).isEqualTo(3);
+
+        Cast cast = Cast.read(path);
+        CastNodes.Model model = cast.findNodeByHash(MODEL_HASH, CastNodes.Model.class).orElseThrow();
+        CastNodes.Mesh mesh = cast.findNodeByHash(MESH_HASH, CastNodes.Mesh.class).orElseThrow();
+        assertThat(model.getName()).hasValue("Triangl3");
+        assertThat(mesh.getName()).hasValue("Triangle");
+        assertThat(mesh.getFaceBuffer()).isEqualTo(ByteBuffer.wrap(new byte[]{2, 1, 0}));
+    }
+
+    @Test
+    void testSetPropertyWithWrongType(@TempDir Path tempDir) throws Exception {
+        Cast cast = Cast.create(0x5A4C524E454C4156L);
+        CastNodes.Mesh mesh = cast.createRoot().createModel().createMesh()
+            .setVertexPositionBuffer(FloatBuffer.wrap(new float[]{0, 1, 2, 3, 4, 5}))
+            .setMaterial(42L);
+        Path path = tempDir.resolve("edit.cast");
+        cast.write(path);
+        byte[] bytes = Files.readAllBytes(path);
+
+        try (CastFileEditor editor = CastFileEditor.open(path)) {
+            // Both encode to the same number of bytes as the current value
+            assertThatThrownBy(() -> editor.setProperty(mesh.getHash(), "m", 7))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Long");
+            assertThatThrownBy(() -> editor.setProperty(mesh.getHash(), "vp", IntBuffer.wrap(new int[]{0, 1, 2, 3, 4, 5})))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("FloatBuffer");
+            assertThatThrownBy(() -> editor.setProperty(mesh.getHash(), "m", LongBuffer.wrap(new long[]{7})))
+                .isInstanceOf(IllegalArgumentException.class);
+
+            assertThat(editor.setProperty(mesh.getHash(), "m", 7L)).isTrue();
+        }
+
+        assertThat(countDifferences(bytes, Files.readAllBytes(path))).isEqualTo(1);
+        assertThat(Cast.read(path).findNodeByHash(mesh.getHash(), CastNodes.Mesh.class).orElseThrow().getMaterial())
+            .hasValue(7L);
+    }
+
+    @Test
+    void testAppendRoot(@TempDir Path tempDir) throws Exception {
+        byte[] bytes = Base64.getDecoder().decode(CastTest.BASIC_CAST);
+        Path path = tempDir.resolve("edit.cast");
+        Files.write(path, bytes);
+
+        Cast other = Cast.create(1);
+        CastNodes.Root root = other.createRoot();
+        root.createModel().setName("Appended");
+
+        try (CastFileEditor editor = CastFileEditor.open(path)) {
+            assertThat(editor.getIndex().size()).isEqualTo(3);
+            editor.appendRoot(root);
+            assertThat(editor.getIndex().size()).isEqualTo(5);
+            assertThat(editor.setProperty(2, "n", "Appendex")).isTrue();
+        }
+
+        Cast cast = Cast.read(path);
+        assertThat(cast.getRootNodes()).hasSize(2);
+        assertThat(((CastNodes.Root) cast.getRootNodes().get(1)).getModels().get(0).getName())
+            .hasValue("Appendex");
+
+        // The existing data is left alone, apart from the root node count
+        byte[] edited = Files.readAllBytes(path);
+        assertThat(edited).hasSize(bytes.length + root.getLength());
+        assertThat(countDifferences(bytes, edited)).isEqualTo(1);
+    }
+
+    @Test
+    void testOpenInvalidFile(@TempDir Path tempDir) throws Exception {
+        Path path = tempDir.resolve("invalid.cast");
+        Files.write(path, new byte[16]);
+
+        assertThatThrownBy(() -> CastFileEditor.open(path))
+            .isInstanceOf(CastException.class);
+    }
+
+    private static int countDifferences(byte[] expected, byte[] actual) {
+        int count = 0;
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i] != actual[i]) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
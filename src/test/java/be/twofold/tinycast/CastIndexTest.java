@@ -0,0 +1,119 @@
+package be.twofold.tinycast;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CastIndexTest {
+    @Test
+    void testBuild(@TempDir Path tempDir) throws Exception {
+        Path path = tempDir.resolve("basic.cast");
+        Files.write(path, Base64.getDecoder().decode(CastTest.BASIC_CAST));
+
+        CastIndex index = CastIndex.build(path);
+        Cast cast = Cast.read(path);
+        CastNode root = cast.getRootNodes().get(0);
+        CastNode model = root.children.get(0);
+        CastNode mesh = model.children.get(0);
+
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(index.getSourceLength()).isEqualTo(Files.size(path));
+
+        assertThat(index.getIdentifier(0)).isEqualTo(CastNodeID.ROOT);
+        assertThat(index.getParent(0)).isEqualTo(-1);
+        assertThat(index.getOffset(0)).isEqualTo(16);
+        assertThat(index.getSize(0)).isEqualTo(Files.size(path) - 16);
+        assertThat(index.getChildCount(0)).isEqualTo(1);
+
+        assertThat(index.getIdentifier(1)).isEqualTo(CastNodeID.MODEL);
+        assertThat(index.getHash(1)).isEqualTo(model.getHash());
+        assertThat(index.getParent(1)).isEqualTo(0);
+        assertThat(index.getPropertyCount(1)).isEqualTo(model.properties.size());
+
+        assertThat(index.getIdentifier(2)).isEqualTo(CastNodeID.MESH);
+        assertThat(index.getParent(2)).isEqualTo(1);
+        assertThat(index.getOffset(2) + index.getSize(2)).isEqualTo(index.getOffset(1) + index.getSize(1));
+
+        assertThat(index.indexOf(mesh.getHash())).isEqualTo(2);
+        assertThat(index.indexOf(0x1234_5678_9abcL)).isEqualTo(-1);
+    }
+
+    @Test
+    void testBuildInvalidArrayLength(@TempDir Path tempDir) throws Exception {
+        byte[] bytes = Base64.getDecoder().decode(CastTest.BASIC_CAST);
+        int index = CastTest.indexOf(bytes, "vp".getBytes(StandardCharsets.US_ASCII));
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(index - 4, 0x01000000);
+        Path path = tempDir.resolve("corrupt.cast");
+        Files.write(path, bytes);
+
+        // The same validation as reading the whole file
+        assertThatThrownBy(() -> CastIndex.build(path))
+            .isInstanceOf(CastException.class)
+            .hasMessageContaining("Invalid array length");
+    }
+
+    @Test
+    void testIndexOf(@TempDir Path tempDir) throws Exception {
+        long[] hashes = {5, -3, Long.MIN_VALUE, 0x1_0000_0000L, 5, Long.MAX_VALUE, -3, 0};
+        Path path = tempDir.resolve("hashes.cast");
+        try (CastStreamWriter writer = CastStreamWriter.open(path)) {
+            writer.beginNode(CastNodeID.ROOT, 1);
+            for (long hash : hashes) {
+                writer.beginNode(CastNodeID.MODEL, hash);
+                writer.endNode();
+            }
+            writer.endNode();
+        }
+
+        CastIndex index = CastIndex.build(path);
+        assertThat(index.indexOf(5)).isEqualTo(1);
+        assertThat(index.indexOf(-3)).isEqualTo(2);
+        assertThat(index.indexOf(Long.MIN_VALUE)).isEqualTo(3);
+        assertThat(index.indexOf(0x1_0000_0000L)).isEqualTo(4);
+        assertThat(index.indexOf(Long.MAX_VALUE)).isEqualTo(6);
+        assertThat(index.indexOf(0)).isEqualTo(8);
+        assertThat(index.indexOf(1)).isEqualTo(0);
+        assertThat(index.indexOf(2)).isEqualTo(-1);
+    }
+
+    @Test
+    void testSaveAndLoad(@TempDir Path tempDir) throws Exception {
+        Path path = tempDir.resolve("basic.cast");
+        Files.write(path, Base64.getDecoder().decode(CastTest.BASIC_CAST));
+        Path sidecar = tempDir.resolve("basic.cidx");
+
+        CastIndex index = CastIndex.build(path);
+        index.save(sidecar);
+        CastIndex loaded = CastIndex.load(sidecar);
+
+        assertThat(loaded.size()).isEqualTo(index.size());
+        assertThat(loaded.getSourceLength()).isEqualTo(index.getSourceLength());
+        for (int i = 0; i < index.size(); i++) {
+            assertThat(loaded.getIdentifier(i)).isEqualTo(index.getIdentifier(i));
+            assertThat(loaded.getHash(i)).isEqualTo(index.getHash(i));
+            assertThat(loaded.getParent(i)).isEqualTo(index.getParent(i));
+            assertThat(loaded.getOffset(i)).isEqualTo(index.getOffset(i));
+            assertThat(loaded.getSize(i)).isEqualTo(index.getSize(i));
+            assertThat(loaded.getPropertyCount(i)).isEqualTo(index.getPropertyCount(i));
+            assertThat(loaded.getChildCount(i)).isEqualTo(index.getChildCount(i));
+        }
+    }
+
+    @Test
+    void testLoadInvalid(@TempDir Path tempDir) throws Exception {
+        Path sidecar = tempDir.resolve("invalid.cidx");
+        Files.write(sidecar, new byte[24]);
+
+        assertThatThrownBy(() -> CastIndex.load(sidecar))
+            .isInstanceOf(CastException.class);
+    }
+}
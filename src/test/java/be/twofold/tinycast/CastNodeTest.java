@@ -4,9 +4,19 @@ import nl.jqno.equalsverifier.EqualsVerifier;
 import nl.jqno.equalsverifier.Warning;
 import org.junit.jupiter.api.Test;
 
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class CastNodeTest {
     @Test
@@ -16,6 +26,9 @@ class CastNodeTest {
             .suppress(Warning.NULL_FIELDS)
             .withIgnoredFields("hasher")
             .withIgnoredFields("cachedLength")
+            .withIgnoredFields("parent")
+            .withIgnoredFields("index")
+            .withIgnoredFields("buckets")
             .withPrefabValues(CastNode.class,
                 new CastNodes.Color(new AtomicLong()),
                 new CastNodes.File(new AtomicLong()))
@@ -32,4 +45,100 @@ class CastNodeTest {
         assertThat(model.getMeshes()).isEmpty();
         assertThat(model.removeChild(mesh)).isFalse();
     }
+
+    @Test
+    void testChildrenOfType() {
+        CastNodes.Model model = new CastNodes.Model(new AtomicLong());
+        assertThat(model.getMeshes()).isEmpty();
+        assertThat(model.getSkeleton()).isEmpty();
+
+        CastNodes.Mesh first = model.createMesh();
+        CastNodes.Material material = model.createMaterial();
+        List<CastNodes.Mesh> meshes = model.getMeshes();
+        assertThat(model.getMeshes()).isSameAs(meshes);
+        assertThat(meshes).containsExactly(first);
+        assertThat(model.getMaterials()).containsExactly(material);
+
+        CastNodes.Mesh second = model.createMesh();
+        CastNodes.Skeleton skeleton = model.createSkeleton();
+        assertThat(meshes).containsExactly(first, second);
+        assertThat(model.getSkeleton()).contains(skeleton);
+
+        model.removeChild(first);
+        assertThat(meshes).containsExactly(second);
+        assertThatThrownBy(() -> meshes.add(first))
+            .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void testChildrenOfTypeConcurrently() throws Exception {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            CastNodes.Model model = new CastNodes.Model(new AtomicLong());
+            for (int i = 0; i < 64; i++) {
+                model.createMesh();
+                model.createMaterial();
+            }
+
+            CountDownLatch start = new CountDownLatch(1);
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                List<Future<Integer>> sizes = new ArrayList<>();
+                for (int i = 0; i < 4; i++) {
+                    sizes.add(executor.submit(() -> {
+                        start.await();
+                        return model.getMeshes().size() + model.getMaterials().size();
+                    }));
+                }
+                start.countDown();
+                for (Future<Integer> size : sizes) {
+                    assertThat(size.get()).isEqualTo(128);
+                }
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    @Test
+    void testLengthAfterEdits() {
+        AtomicLong hasher = new AtomicLong();
+        CastNodes.Root root = new CastNodes.Root(hasher);
+        CastNodes.Model model = root.createModel();
+        CastNodes.Mesh mesh = model.createMesh().setName("Mesh");
+        root.getLength();
+
+        mesh.setName("Longer mesh");
+        assertThat(root.getLength()).isEqualTo(recompute(root));
+
+        CastNodes.Mesh second = model.createMesh();
+        second.setName("Second");
+        second.setVertexPositionBuffer(FloatBuffer.wrap(new float[]{0, 1, 2, 3, 4, 5}));
+        assertThat(root.getLength()).isEqualTo(recompute(root));
+
+        model.removeChild(mesh);
+        mesh.setName("Detached");
+        assertThat(root.getLength()).isEqualTo(recompute(root));
+        assertThat(mesh.parent).isNull();
+        assertThat(second.parent).isSameAs(model);
+    }
+
+    @Test
+    void testSetIntBufferWithMaxValue() {
+        CastNodes.Mesh mesh = new CastNodes.Mesh(new AtomicLong());
+
+        mesh.setFaceBuffer(IntBuffer.wrap(new int[]{0, 1, 300}), 300);
+        assertThat(mesh.getFaceBuffer()).isEqualTo(ShortBuffer.wrap(new short[]{0, 1, 300}));
+        assertThat(mesh.properties.get("f").getIdentifier()).isEqualTo(CastPropertyID.SHORT);
+    }
+
+    private static int recompute(CastNode node) {
+        int length = 24;
+        for (CastProperty property : node.properties.values()) {
+            length += property.getLength();
+        }
+        for (CastNode child : node.children) {
+            length += recompute(child);
+        }
+        return length;
+    }
 }
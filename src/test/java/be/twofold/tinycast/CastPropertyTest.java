@@ -4,12 +4,30 @@ import nl.jqno.equalsverifier.EqualsVerifier;
 import nl.jqno.equalsverifier.Warning;
 import org.junit.jupiter.api.Test;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
 class CastPropertyTest {
     @Test
     void testEqualsAndHashCode() {
         EqualsVerifier
             .forClass(CastProperty.class)
             .suppress(Warning.NULL_FIELDS)
+            .withIgnoredFields("rawBytes", "nameBytes", "stringBytes")
             .verify();
     }
+
+    @Test
+    void testGetLength() {
+        CastProperty property = new CastProperty(CastPropertyID.STRING, "n\u00e4me", "v\u00e4lue\uD83D\uDE00");
+        assertThat(property.getLength()).isEqualTo(8 + 5 + 6 + 4 + 1);
+        assertThat(property.getNameBytes()).isSameAs(property.getNameBytes());
+    }
+
+    @Test
+    void testGetLengthUnpairedSurrogate() {
+        CastProperty property = new CastProperty(CastPropertyID.STRING, "n", "\uD83D");
+        assertThatThrownBy(property::getLength)
+            .isInstanceOf(IllegalArgumentException.class);
+    }
 }
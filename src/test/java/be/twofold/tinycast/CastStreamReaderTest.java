@@ -0,0 +1,70 @@
+package be.twofold.tinycast;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CastStreamReaderTest {
+    @Test
+    void testEvents() throws Exception {
+        byte[] bytes = Base64.getDecoder().decode(CastTest.BASIC_CAST);
+        try (CastStreamReader reader = CastStreamReader.open(new ByteArrayInputStream(bytes))) {
+            assertThat(reader.getRootNodeCount()).isEqualTo(1);
+
+            assertThat(reader.next()).isEqualTo(CastStreamReader.Event.NODE_START);
+            assertThat(reader.getNodeIdentifier()).isEqualTo(CastNodeID.ROOT);
+
+            assertThat(reader.next()).isEqualTo(CastStreamReader.Event.NODE_START);
+            assertThat(reader.getNodeIdentifier()).isEqualTo(CastNodeID.MODEL);
+
+            assertThat(reader.next()).isEqualTo(CastStreamReader.Event.PROPERTY);
+            assertThat(reader.getPropertyName()).isEqualTo("n");
+            assertThat(reader.getValue()).isEqualTo("Triangle");
+
+            assertThat(reader.next()).isEqualTo(CastStreamReader.Event.NODE_START);
+            assertThat(reader.getNodeIdentifier()).isEqualTo(CastNodeID.MESH);
+            assertThat(reader.getDepth()).isEqualTo(2);
+
+            assertThat(reader.next()).isEqualTo(CastStreamReader.Event.PROPERTY);
+            assertThat(reader.getPropertyName()).isEqualTo("n");
+
+            assertThat(reader.next()).isEqualTo(CastStreamReader.Event.PROPERTY);
+            assertThat(reader.getPropertyName()).isEqualTo("vp");
+            assertThat(reader.getArrayLength()).isEqualTo(3);
+
+            // Read in two chunks, the remainder is skipped
+            float[] positions = new float[4];
+            assertThat(reader.readFloats(positions, 0, 4)).isEqualTo(4);
+            assertThat(positions).containsExactly(-1.0f, -1.0f, 0.0f, 1.0f);
+
+            assertThat(reader.next()).isEqualTo(CastStreamReader.Event.PROPERTY);
+            assertThat(reader.getPropertyName()).isEqualTo("f");
+            int[] faces = new int[8];
+            assertThat(reader.readInts(faces, 0, 8)).isEqualTo(3);
+            assertThat(reader.readInts(faces, 0, 8)).isEqualTo(-1);
+            assertThat(faces).startsWith(0, 1, 2);
+
+            assertThat(reader.next()).isEqualTo(CastStreamReader.Event.NODE_END);
+            assertThat(reader.next()).isEqualTo(CastStreamReader.Event.NODE_END);
+            assertThat(reader.next()).isEqualTo(CastStreamReader.Event.NODE_END);
+            assertThat(reader.next()).isEqualTo(CastStreamReader.Event.END);
+        }
+    }
+
+    @Test
+    void testSkipNode() throws Exception {
+        byte[] bytes = Base64.getDecoder().decode(CastTest.BASIC_CAST);
+        try (CastStreamReader reader = CastStreamReader.open(new ByteArrayInputStream(bytes))) {
+            assertThat(reader.next()).isEqualTo(CastStreamReader.Event.NODE_START);
+            assertThat(reader.next()).isEqualTo(CastStreamReader.Event.NODE_START);
+            reader.skipNode();
+
+            assertThat(reader.next()).isEqualTo(CastStreamReader.Event.NODE_END);
+            assertThat(reader.next()).isEqualTo(CastStreamReader.Event.NODE_END);
+            assertThat(reader.next()).isEqualTo(CastStreamReader.Event.END);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package be.twofold.tinycast;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CastStreamWriterTest {
+    @Test
+    void testWrite(@TempDir Path tempDir) throws Exception {
+        Path path = tempDir.resolve("stream.cast");
+        try (CastStreamWriter writer = CastStreamWriter.open(path)) {
+            writer.beginNode(CastNodeID.ROOT, 0x5A4C524E454C4156L);
+            writer.beginNode(CastNodeID.MODEL, 0x5A4C524E454C4157L);
+            writer.property(CastPropertyID.STRING, "n", "Triangle");
+            writer.beginNode(CastNodeID.MESH, 0x5A4C524E454C4158L);
+            writer.property(CastPropertyID.STRING, "n", "Triangle");
+            writer.property(CastPropertyID.VECTOR_3, "vp", FloatBuffer.wrap(new float[]{
+                -1.0f, -1.0f, +0.0f,
+                +1.0f, -1.0f, +0.0f,
+                +0.0f, +1.0f, +0.0f
+            }));
+            writer.property(CastPropertyID.BYTE, "f", ByteBuffer.wrap(new byte[]{0, 1, 2}));
+            writer.endNode();
+            writer.endNode();
+            writer.endNode();
+            assertThat(writer.getDepth()).isEqualTo(-1);
+        }
+
+        assertThat(Base64.getEncoder().encodeToString(Files.readAllBytes(path)))
+            .isEqualTo(CastTest.BASIC_CAST);
+    }
+
+    @Test
+    void testWriteLargeNodes(@TempDir Path tempDir) throws Exception {
+        // Large enough that the node headers are written out before they are filled in
+        float[] positions = new float[3 * 32768];
+        Cast cast = Cast.create(1);
+        CastNodes.Root root = cast.createRoot();
+        for (int i = 0; i < 3; i++) {
+            root.createModel().createMesh().setVertexPositionBuffer(FloatBuffer.wrap(positions));
+        }
+        cast.createRoot();
+
+        Path path = tempDir.resolve("stream.cast");
+        try (CastStreamWriter writer = CastStreamWriter.open(path)) {
+            for (CastNode rootNode : cast.getRootNodes()) {
+                writeNode(writer, rootNode);
+            }
+        }
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        cast.write(baos);
+        assertThat(Files.readAllBytes(path)).isEqualTo(baos.toByteArray());
+    }
+
+    @Test
+    void testInvalidState(@TempDir Path tempDir) throws Exception {
+        CastStreamWriter writer = CastStreamWriter.open(tempDir.resolve("stream.cast"));
+        assertThatThrownBy(() -> writer.property(CastPropertyID.INTEGER_32, "i", 1))
+            .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(writer::endNode)
+            .isInstanceOf(IllegalStateException.class);
+
+        writer.beginNode(CastNodeID.ROOT, 1);
+        writer.beginNode(CastNodeID.MODEL, 2);
+        writer.endNode();
+        assertThatThrownBy(() -> writer.property(CastPropertyID.INTEGER_32, "i", 1))
+            .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(writer::close)
+            .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> writer.beginNode(CastNodeID.MODEL, 3))
+            .isInstanceOf(IllegalStateException.class);
+    }
+
+    private static void writeNode(CastStreamWriter writer, CastNode node) throws CastException {
+        writer.beginNode(node.getIdentifier(), node.getHash());
+        for (CastProperty property : node.properties.values()) {
+            writer.property(property.getIdentifier(), property.getName(), property.getValue());
+        }
+        for (CastNode child : node.children) {
+            writeNode(writer, child);
+        }
+        writer.endNode();
+    }
+}
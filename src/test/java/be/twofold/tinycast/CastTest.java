@@ -1,15 +1,32 @@
 package be.twofold.tinycast;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatNoException;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 
 class CastTest {
 
@@ -26,6 +43,322 @@ class CastTest {
         assertThat(cast).isEqualTo(createCast(false));
     }
 
+    @Test
+    void testReadPath(@TempDir Path tempDir) throws Exception {
+        Path path = tempDir.resolve("basic.cast");
+        Files.write(path, Base64.getDecoder().decode(BASIC_CAST));
+
+        Cast cast = Cast.read(path);
+        assertThat(cast).isEqualTo(createCast(false));
+    }
+
+    @Test
+    void testReadFileChannel(@TempDir Path tempDir) throws Exception {
+        byte[] bytes = Base64.getDecoder().decode(BASIC_CAST);
+        byte[] padded = new byte[bytes.length + 8];
+        System.arraycopy(bytes, 0, padded, 4, bytes.length);
+
+        Path path = tempDir.resolve("padded.cast");
+        Files.write(path, padded);
+
+        try (FileChannel channel = FileChannel.open(path)) {
+            channel.position(4);
+            Cast cast = Cast.read(channel);
+            assertThat(cast).isEqualTo(createCast(false));
+            assertThat(channel.position()).isEqualTo(4 + bytes.length);
+        }
+    }
+
+    @Test
+    void testReadLazy(@TempDir Path tempDir) throws Exception {
+        Path path = tempDir.resolve("basic.cast");
+        Files.write(path, Base64.getDecoder().decode(BASIC_CAST));
+
+        Cast cast = Cast.read(path, CastReadOptions.defaults().withLazy(true));
+        CastNodes.Mesh mesh = ((CastNodes.Root) cast.getRootNodes().get(0))
+            .getModels().get(0)
+            .getMeshes().get(0);
+
+        assertThat(mesh.properties.get("vp").getArrayLength()).isEqualTo(3);
+        assertThat(mesh.getVertexPositionBuffer().get(3)).isEqualTo(1.0f);
+        assertThat(cast).isEqualTo(createCast(false));
+    }
+
+    @Test
+    void testReadWithAllocator(@TempDir Path tempDir) throws Exception {
+        byte[] bytes = Base64.getDecoder().decode(BASIC_CAST);
+        Path path = tempDir.resolve("basic.cast");
+        Files.write(path, bytes);
+
+        CastReadOptions options = CastReadOptions.defaults()
+            .withAllocator(CastBufferAllocator.direct());
+        for (Cast cast : List.of(
+            Cast.read(new ByteArrayInputStream(bytes), options),
+            Cast.read(path, options),
+            Cast.read(path, options.withLazy(true))
+        )) {
+            CastNodes.Mesh mesh = ((CastNodes.Root) cast.getRootNodes().get(0))
+                .getModels().get(0)
+                .getMeshes().get(0);
+            assertThat(mesh.getVertexPositionBuffer().isDirect()).isTrue();
+            assertThat(cast).isEqualTo(createCast(false));
+        }
+    }
+
+    @Test
+    void testReadWithMemoryBudget() throws Exception {
+        byte[] bytes = Base64.getDecoder().decode(BASIC_CAST);
+        // The mesh has 36 bytes of positions and 3 bytes of faces
+        CastReadOptions options = CastReadOptions.defaults().withMemoryBudget(38);
+
+        assertThatThrownBy(() -> Cast.read(new ByteArrayInputStream(bytes), options))
+            .isInstanceOf(CastException.class)
+            .hasMessageContaining("budget");
+        assertThat(Cast.read(new ByteArrayInputStream(bytes), options.withMemoryBudget(39)))
+            .isEqualTo(createCast(false));
+    }
+
+    @Test
+    void testReadWithSpillThreshold() throws Exception {
+        byte[] bytes = Base64.getDecoder().decode(BASIC_CAST);
+        CastReadOptions options = CastReadOptions.defaults()
+            .withSpillThreshold(32)
+            .withMemoryBudget(16);
+
+        Cast cast = Cast.read(new ByteArrayInputStream(bytes), options);
+        CastNodes.Mesh mesh = ((CastNodes.Root) cast.getRootNodes().get(0))
+            .getModels().get(0)
+            .getMeshes().get(0);
+        assertThat(mesh.getVertexPositionBuffer().isDirect()).isTrue();
+        assertThat(cast).isEqualTo(createCast(false));
+    }
+
+    @Test
+    void testReadInvalidArrayLength() throws Exception {
+        byte[] bytes = Base64.getDecoder().decode(BASIC_CAST);
+        int index = indexOf(bytes, "vp".getBytes(StandardCharsets.US_ASCII));
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(index - 4, 0x40000000);
+
+        assertThatThrownBy(() -> Cast.read(new ByteArrayInputStream(bytes)))
+            .isInstanceOf(CastException.class)
+            .hasMessageContaining("Invalid array length");
+    }
+
+    @Test
+    void testReadArrayLengthBeyondNode() throws Exception {
+        byte[] bytes = Base64.getDecoder().decode(BASIC_CAST);
+        int index = indexOf(bytes, "vp".getBytes(StandardCharsets.US_ASCII));
+        // Fits in an int, but is far more than what is left in the node
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(index - 4, 0x01000000);
+
+        assertThatThrownBy(() -> Cast.read(new ByteArrayInputStream(bytes)))
+            .isInstanceOf(CastException.class)
+            .hasMessageContaining("Invalid array length");
+        assertThatThrownBy(() -> Cast.read(ByteBuffer.wrap(bytes)))
+            .isInstanceOf(CastException.class)
+            .hasMessageContaining("Invalid array length");
+    }
+
+    @Test
+    void testReadWithNodeFilter(@TempDir Path tempDir) throws Exception {
+        byte[] bytes = Base64.getDecoder().decode(BASIC_CAST);
+        Path path = tempDir.resolve("basic.cast");
+        Files.write(path, bytes);
+
+        CastReadOptions options = CastReadOptions.defaults()
+            .withNodeFilter(CastNodeFilter.of(id -> id != CastNodeID.MESH));
+
+        Cast expected = createCast(false);
+        CastNodes.Model model = ((CastNodes.Root) expected.getRootNodes().get(0)).getModels().get(0);
+        model.removeChild(model.getMeshes().get(0));
+
+        assertThat(Cast.read(new ByteArrayInputStream(bytes), options)).isEqualTo(expected);
+        assertThat(Cast.read(path, options)).isEqualTo(expected);
+    }
+
+    @Test
+    void testReadParallel(@TempDir Path tempDir) throws Exception {
+        Cast cast = Cast.create(0x5A4C524E454C4156L);
+        CastNodes.Root root = cast.createRoot();
+        for (int i = 0; i < 4; i++) {
+            float[] positions = new float[3 * 8192];
+            Arrays.fill(positions, i);
+            root.createModel()
+                .setName("Model" + i)
+                .createMesh()
+                .setVertexPositionBuffer(FloatBuffer.wrap(positions))
+                .setFaceBuffer(IntBuffer.wrap(new int[]{0, 1, 2}));
+        }
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        cast.write(baos);
+        Path path = tempDir.resolve("parallel.cast");
+        Files.write(path, baos.toByteArray());
+
+        CastReadOptions options = CastReadOptions.defaults().withParallel(true);
+        Cast fromPath = Cast.read(path, options);
+        Cast fromBuffer = Cast.read(ByteBuffer.wrap(baos.toByteArray()), options);
+
+        assertThat(fromPath).isEqualTo(cast);
+        assertThat(fromBuffer).isEqualTo(cast);
+        assertThat(fromPath.createRoot().getHash()).isEqualTo(cast.createRoot().getHash());
+    }
+
+    @Test
+    void testReadParallelCorrupt() throws Exception {
+        Cast cast = Cast.create(0x5A4C524E454C4156L);
+        CastNodes.Root root = cast.createRoot();
+        for (int i = 0; i < 4; i++) {
+            root.createModel().createMesh().setVertexPositionBuffer(FloatBuffer.wrap(new float[3 * 32768]));
+        }
+        ByteBuffer buffer = cast.toByteBuffer();
+
+        // Corrupt the property type of the last mesh, which is read by a forked task
+        int mesh = buffer.limit() - (int) root.getModels().get(3).getMeshes().get(0).getLength();
+        buffer.putShort(mesh + 24, (short) 0x7777);
+
+        assertThatThrownBy(() -> Cast.read(buffer, CastReadOptions.defaults().withParallel(true)))
+            .isInstanceOf(CastException.class);
+    }
+
+    @Test
+    void testReadAndWriteAsync(@TempDir Path tempDir) throws Exception {
+        Cast cast = Cast.create(0x5A4C524E454C4156L);
+        CastNodes.Root root = cast.createRoot();
+        for (int i = 0; i < 4; i++) {
+            float[] positions = new float[3 * 100_000];
+            Arrays.fill(positions, i);
+            root.createModel().createMesh().setVertexPositionBuffer(FloatBuffer.wrap(positions));
+        }
+
+        Path path = tempDir.resolve("async.cast");
+        cast.writeAsync(path).get();
+        assertThat(Files.size(path)).isGreaterThan(4L * 1024 * 1024);
+        assertThat(Cast.readAsync(path).get()).isEqualTo(cast);
+    }
+
+    @Test
+    void testReadAsyncFailure(@TempDir Path tempDir) throws Exception {
+        Path path = tempDir.resolve("invalid.cast");
+        Files.write(path, new byte[16]);
+
+        assertThat(Cast.readAsync(path))
+            .failsWithin(Duration.ofSeconds(10))
+            .withThrowableOfType(ExecutionException.class)
+            .withCauseInstanceOf(CastException.class);
+    }
+
+    @Test
+    void testReadAll(@TempDir Path tempDir) throws Exception {
+        List<Path> paths = new ArrayList<>();
+        List<Cast> expected = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Cast cast = Cast.create(i * 100L);
+            cast.createRoot().createModel().setName("Model " + i);
+            Path path = tempDir.resolve(i + ".cast");
+            try (OutputStream out = Files.newOutputStream(path)) {
+                cast.write(out);
+            }
+            paths.add(path);
+            expected.add(cast);
+        }
+
+        CastReadOptions options = CastReadOptions.defaults()
+            .withMaxConcurrency(3)
+            .withMaxBytesInFlight(100);
+        assertThat(Cast.readAll(paths, options)).isEqualTo(expected);
+    }
+
+    @Test
+    void testReadAllWithHandler(@TempDir Path tempDir) throws Exception {
+        Path valid = tempDir.resolve("valid.cast");
+        Files.write(valid, Base64.getDecoder().decode(BASIC_CAST));
+        Path invalid = tempDir.resolve("invalid.cast");
+        Files.write(invalid, new byte[16]);
+        Path missing = tempDir.resolve("missing.cast");
+
+        List<Path> read = new ArrayList<>();
+        List<Path> failed = new ArrayList<>();
+        Cast.readAll(List.of(valid, invalid, missing, valid), CastReadOptions.defaults(), new CastBatchHandler() {
+            @Override
+            public void read(Path path, Cast cast) {
+                read.add(path);
+            }
+
+            @Override
+            public void failed(Path path, CastException exception) {
+                failed.add(path);
+            }
+        });
+
+        assertThat(read).containsExactly(valid, valid);
+        assertThat(failed).containsExactlyInAnyOrder(invalid, missing);
+        assertThatThrownBy(() -> Cast.readAll(List.of(valid, invalid), CastReadOptions.defaults()))
+            .isInstanceOf(CastException.class);
+    }
+
+    @Test
+    void testReadAllWithError(@TempDir Path tempDir) throws Exception {
+        Path path = tempDir.resolve("basic.cast");
+        Files.write(path, Base64.getDecoder().decode(BASIC_CAST));
+        CastReadOptions options = CastReadOptions.defaults()
+            .withNodeFilter((identifier, hash, depth) -> {
+                throw new OutOfMemoryError("Simulated");
+            });
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            assertThatThrownBy(() -> Cast.readAll(List.of(path, path), options))
+                .isInstanceOf(OutOfMemoryError.class)
+                .hasMessage("Simulated");
+
+            List<Throwable> causes = new ArrayList<>();
+            Cast.readAll(List.of(path, path), options, new CastBatchHandler() {
+                @Override
+                public void read(Path path, Cast cast) {
+                    throw new AssertionError("Unexpected read of " + path);
+                }
+
+                @Override
+                public void failed(Path path, CastException exception) {
+                    causes.add(exception.getCause());
+                }
+            });
+            assertThat(causes).hasSize(2).allMatch(OutOfMemoryError.class::isInstance);
+        });
+    }
+
+    @Test
+    void testParse() throws Exception {
+        byte[] bytes = Base64.getDecoder().decode(BASIC_CAST);
+        List<String> events = new ArrayList<>();
+        Cast.parse(new ByteArrayInputStream(bytes), new CastHandler() {
+            @Override
+            public boolean startNode(CastNodeID identifier, long hash, int propertyCount, int childCount) {
+                events.add("start " + identifier);
+                return identifier != CastNodeID.MESH;
+            }
+
+            @Override
+            public void property(String name, CastPropertyID identifier, int arrayLength, Object value) {
+                events.add(name + "=" + value);
+            }
+
+            @Override
+            public void endNode() {
+                events.add("end");
+            }
+        });
+
+        assertThat(events).containsExactly(
+            "start ROOT",
+            "start MODEL",
+            "n=Triangle",
+            "start MESH",
+            "end",
+            "end"
+        );
+    }
+
     @Test
     void testWrite() throws Exception {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -35,6 +368,100 @@ class CastTest {
             .isEqualTo(BASIC_CAST);
     }
 
+    @Test
+    void testWritePathAndChannel(@TempDir Path tempDir) throws Exception {
+        Cast cast = Cast.create(0x5A4C524E454C4156L);
+        CastNodes.Mesh mesh = cast.createRoot().createModel().createMesh();
+        float[] positions = new float[30_000];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = i;
+        }
+        mesh.setVertexPositionBuffer(FloatBuffer.wrap(positions));
+        mesh.setVertexNormalBuffer(ByteBuffer.allocateDirect(positions.length * Float.BYTES)
+            .order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().put(positions).flip());
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        cast.write(baos);
+
+        Path path = tempDir.resolve("written.cast");
+        cast.write(path);
+        assertThat(Files.readAllBytes(path)).isEqualTo(baos.toByteArray());
+
+        // Read back through a mapping, so the raw bytes are passed through when writing again
+        Path copy = tempDir.resolve("copy.cast");
+        try (FileChannel channel = FileChannel.open(copy, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            Cast.read(path).write(channel);
+        }
+        assertThat(Files.readAllBytes(copy)).isEqualTo(baos.toByteArray());
+        assertThat(Cast.read(path).toByteBuffer()).isEqualTo(ByteBuffer.wrap(baos.toByteArray()));
+    }
+
+    @Test
+    void testWriteParallel(@TempDir Path tempDir) throws Exception {
+        Cast cast = Cast.create(0x5A4C524E454C4156L);
+        CastNodes.Root root = cast.createRoot();
+        for (int i = 0; i < 4; i++) {
+            CastNodes.Model model = root.createModel().setName("Model" + i);
+            for (int j = 0; j < 3; j++) {
+                float[] positions = new float[3 * 8192];
+                Arrays.fill(positions, i * 3 + j);
+                model.createMesh()
+                    .setVertexPositionBuffer(FloatBuffer.wrap(positions))
+                    .setFaceBuffer(IntBuffer.wrap(new int[]{0, 1, 2}));
+            }
+        }
+        cast.createRoot().createModel().setName("Small");
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        cast.write(baos);
+
+        CastWriteOptions options = CastWriteOptions.defaults().withParallel(true);
+        Path path = tempDir.resolve("parallel.cast");
+        cast.write(path, options);
+        assertThat(Files.readAllBytes(path)).isEqualTo(baos.toByteArray());
+
+        // Writing starts at the current position of the channel, and ends up after the file
+        Path offset = tempDir.resolve("offset.cast");
+        try (FileChannel channel = FileChannel.open(offset, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+            cast.write(channel, options);
+            assertThat(channel.position()).isEqualTo(3 + baos.size());
+        }
+        byte[] bytes = Files.readAllBytes(offset);
+        assertThat(Arrays.copyOfRange(bytes, 3, bytes.length)).isEqualTo(baos.toByteArray());
+    }
+
+    @Test
+    void testToByteBuffer() throws Exception {
+        Cast cast = createCast(false);
+        byte[] expected = Base64.getDecoder().decode(BASIC_CAST);
+        assertThat(cast.getLength()).isEqualTo(expected.length);
+
+        ByteBuffer heap = cast.toByteBuffer();
+        assertThat(heap.capacity()).isEqualTo(expected.length);
+        assertThat(heap).isEqualTo(ByteBuffer.wrap(expected));
+
+        ByteBuffer direct = cast.toByteBuffer(CastBufferAllocator.direct());
+        assertThat(direct.isDirect()).isTrue();
+        assertThat(direct).isEqualTo(ByteBuffer.wrap(expected));
+    }
+
+    @Test
+    void testWriteTo() throws Exception {
+        Cast cast = createCast(false);
+        byte[] expected = Base64.getDecoder().decode(BASIC_CAST);
+
+        ByteBuffer buffer = ByteBuffer.allocate(expected.length + 4).position(2);
+        cast.writeTo(buffer);
+        assertThat(buffer.position()).isEqualTo(expected.length + 2);
+        assertThat(buffer.flip().position(2)).isEqualTo(ByteBuffer.wrap(expected));
+
+        ByteBuffer small = ByteBuffer.allocate(expected.length - 1);
+        assertThatThrownBy(() -> cast.writeTo(small))
+            .isInstanceOf(BufferOverflowException.class);
+        assertThat(small.position()).isZero();
+    }
+
     @Test
     void testWriteUnflippedBuffer() throws Exception {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -63,6 +490,71 @@ class CastTest {
         assertThat(cast.findNodeByHash(-1L)).isEmpty();
     }
 
+    @Test
+    void testFindNodeByHashAfterEdits() throws Exception {
+        Cast cast = Cast.create(0x5A4C524E454C4156L);
+        CastNodes.Model model = cast.createRoot().createModel();
+        List<CastNodes.Mesh> meshes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            meshes.add(model.createMesh());
+        }
+        CastNodes.Material material = model.createMaterial();
+        CastNodes.File file = material.createFile();
+
+        for (CastNodes.Mesh mesh : meshes) {
+            assertThat(cast.findNodeByHash(mesh.getHash())).contains(mesh);
+        }
+
+        model.removeChild(material);
+        assertThat(cast.findNodeByHash(material.getHash())).isEmpty();
+        assertThat(cast.findNodeByHash(file.getHash())).isEmpty();
+        for (int i = 0; i < meshes.size(); i += 2) {
+            model.removeChild(meshes.get(i));
+        }
+        for (int i = 0; i < meshes.size(); i++) {
+            CastNodes.Mesh mesh = meshes.get(i);
+            if (i % 2 == 0) {
+                assertThat(cast.findNodeByHash(mesh.getHash())).isEmpty();
+            } else {
+                assertThat(cast.findNodeByHash(mesh.getHash())).contains(mesh);
+            }
+        }
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        cast.write(baos);
+        Cast deserialized = Cast.read(new ByteArrayInputStream(baos.toByteArray()));
+        assertThat(deserialized.findNodeByHash(meshes.get(1).getHash())).contains(meshes.get(1));
+        assertThat(deserialized.findNodeByHash(meshes.get(0).getHash())).isEmpty();
+    }
+
+    @Test
+    void testFindNodeByHashWithDuplicates(@TempDir Path tempDir) throws Exception {
+        // The highest hash wraps the hasher around to 0, so a new node collides with the last model
+        Path path = tempDir.resolve("duplicates.cast");
+        try (CastStreamWriter writer = CastStreamWriter.open(path)) {
+            writer.beginNode(CastNodeID.ROOT, -1);
+            writer.beginNode(CastNodeID.MODEL, 5);
+            writer.endNode();
+            writer.beginNode(CastNodeID.MODEL, 0);
+            writer.endNode();
+            writer.endNode();
+        }
+
+        Cast cast = Cast.read(path);
+        CastNodes.Root root = (CastNodes.Root) cast.getRootNodes().get(0);
+        CastNodes.Model first = root.getModels().get(0);
+        CastNodes.Model second = root.getModels().get(1);
+        assertThat(cast.findNodeByHash(0)).contains(second);
+
+        // The new mesh comes first in depth-first order, like a search would find it
+        CastNodes.Mesh mesh = first.createMesh();
+        assertThat(mesh.getHash()).isEqualTo(0);
+        assertThat(cast.findNodeByHash(0)).contains(mesh);
+
+        first.removeChild(mesh);
+        assertThat(cast.findNodeByHash(0)).contains(second);
+    }
+
     @Test
     void testDeserializedNodeCount() throws Exception {
         Cast cast = Cast.create(0x5A4C524E454C4156L);
@@ -80,6 +572,48 @@ class CastTest {
         assertThat(deserializedMesh.getVertexColorBufferCount()).isEqualTo(1);
     }
 
+    @Test
+    void testReadKnownPropertyNames() throws Exception {
+        Cast cast = Cast.create(0x5A4C524E454C4156L);
+        CastNodes.Mesh mesh = cast.createRoot().createModel().createMesh()
+            .setColorLayerCount(1)
+            .setUVLayerCount(2);
+        mesh.addVertexUVBuffer(FloatBuffer.wrap(new float[]{0.0f, 0.0f}));
+        mesh.addVertexUVBuffer(FloatBuffer.wrap(new float[]{1.0f, 1.0f}));
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        cast.write(baos);
+        Cast first = Cast.read(new ByteArrayInputStream(baos.toByteArray()));
+        Cast second = Cast.read(new ByteArrayInputStream(baos.toByteArray()));
+
+        CastNodes.Mesh firstMesh = first.findNodeByHash(mesh.getHash(), CastNodes.Mesh.class).orElseThrow();
+        CastNodes.Mesh secondMesh = second.findNodeByHash(mesh.getHash(), CastNodes.Mesh.class).orElseThrow();
+        assertThat(firstMesh.getColorLayerCount()).hasValue(1);
+        assertThat(firstMesh.getUVLayerCount()).hasValue(2);
+        assertThat(firstMesh.getVertexUVBufferCount()).isEqualTo(2);
+        assertThat(firstMesh.properties.get("u1").getName())
+            .isSameAs(secondMesh.properties.get("u1").getName());
+    }
+
+    @Test
+    void testRoundTripKeepsPropertyOrder() throws Exception {
+        Cast cast = Cast.create(0x5A4C524E454C4156L);
+        CastNodes.Mesh mesh = cast.createRoot().createModel().createMesh()
+            .setFaceBuffer(IntBuffer.wrap(new int[]{0, 1, 2}))
+            .setMaterial(42L)
+            .setName("Mesh");
+        mesh.createProperty(CastPropertyID.INTEGER_32, "custom", 1);
+        mesh.setVertexPositionBuffer(FloatBuffer.wrap(new float[]{0, 1, 2, 3, 4, 5, 6, 7, 8}));
+
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        cast.write(first);
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        Cast.read(new ByteArrayInputStream(first.toByteArray())).write(second);
+
+        assertThat(second.toByteArray()).isEqualTo(first.toByteArray());
+        assertThat(mesh.properties.keySet()).containsExactly("f", "m", "n", "custom", "vp");
+    }
+
     @Test
     void testAddChildToDeserializedNode() throws Exception {
         byte[] bytes = Base64.getDecoder().decode(BASIC_CAST);
@@ -143,4 +677,13 @@ class CastTest {
             .setFaceBuffer(IntBuffer.wrap(faces));
         return cast;
     }
+
+    static int indexOf(byte[] array, byte[] target) {
+        for (int i = 0; i <= array.length - target.length; i++) {
+            if (Arrays.equals(array, i, i + target.length, target, 0, target.length)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Not found");
+    }
 }
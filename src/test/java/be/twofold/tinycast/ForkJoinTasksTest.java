@@ -0,0 +1,54 @@
+package be.twofold.tinycast;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ForkJoinTasksTest {
+    @Test
+    void testJoinAllWaitsForRemainingTasks() throws Exception {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        CountDownLatch started = new CountDownLatch(1);
+        ForkJoinTask<?> slow = ForkJoinPool.commonPool().submit(() -> {
+            started.countDown();
+            while (true) {
+                ForkJoinTasks.checkCancelled(cancelled);
+                Thread.onSpinWait();
+            }
+        });
+        ForkJoinTask<?> failing = ForkJoinPool.commonPool().submit(() -> {
+            throw new UncheckedIOException(new IOException("second"));
+        });
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+        IOException failure = new IOException("first");
+        assertThatThrownBy(() -> ForkJoinTasks.joinAll(List.of(slow, failing), cancelled, failure))
+            .isSameAs(failure)
+            .satisfies(e -> assertThat(e.getSuppressed()).extracting(Throwable::getMessage).containsExactly("second"));
+        assertThat(slow.isDone()).isTrue();
+        assertThat(cancelled).isTrue();
+    }
+
+    @Test
+    void testJoinAllRethrowsTaskFailure() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        ForkJoinTask<?> failing = ForkJoinPool.commonPool().submit(() -> {
+            throw new UncheckedIOException(new IOException("failed"));
+        });
+
+        assertThatThrownBy(() -> ForkJoinTasks.joinAll(List.of(failing), cancelled, null))
+            .isInstanceOf(IOException.class)
+            .hasMessage("failed");
+        assertThat(cancelled).isTrue();
+    }
+}
@@ -0,0 +1,76 @@
+package be.twofold.tinycast;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IndexedCastFileTest {
+    @Test
+    void testLoad(@TempDir Path tempDir) throws Exception {
+        Path path = tempDir.resolve("basic.cast");
+        Files.write(path, Base64.getDecoder().decode(CastTest.BASIC_CAST));
+        Cast cast = Cast.read(path);
+        CastNodes.Model model = ((CastNodes.Root) cast.getRootNodes().get(0)).getModels().get(0);
+
+        try (IndexedCastFile file = IndexedCastFile.open(path)) {
+            assertThat(file.load(model.getHash(), CastNodes.Model.class)).hasValue(model);
+            assertThat(file.load(model.getHash(), CastNodes.Mesh.class)).isEmpty();
+            assertThat(file.load(0x1234_5678_9abcL)).isEmpty();
+
+            CastNodes.Model loaded = file.load(model.getHash(), CastNodes.Model.class).orElseThrow();
+            CastNodes.Material material = loaded.createMaterial();
+            assertThat(file.getIndex().indexOf(material.getHash())).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    void testLoadConcurrently(@TempDir Path tempDir) throws Exception {
+        Cast cast = Cast.create(1);
+        CastNodes.Root root = cast.createRoot();
+        List<CastNodes.Model> models = new ArrayList<>();
+        for (int i = 0; i < 256; i++) {
+            CastNodes.Model model = root.createModel().setName("Model" + i);
+            model.createMesh().setName("Mesh" + i);
+            models.add(model);
+        }
+        Path path = tempDir.resolve("models.cast");
+        cast.write(path);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (IndexedCastFile file = IndexedCastFile.open(path)) {
+            List<Future<Optional<CastNodes.Model>>> futures = new ArrayList<>();
+            for (CastNodes.Model model : models) {
+                futures.add(executor.submit(() -> file.load(model.getHash(), CastNodes.Model.class)));
+            }
+            for (int i = 0; i < models.size(); i++) {
+                assertThat(futures.get(i).get()).hasValue(models.get(i));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testOpenWithStaleIndex(@TempDir Path tempDir) throws Exception {
+        Path path = tempDir.resolve("basic.cast");
+        Files.write(path, Base64.getDecoder().decode(CastTest.BASIC_CAST));
+        CastIndex index = CastIndex.build(path);
+        Files.write(path, new byte[1], StandardOpenOption.APPEND);
+
+        assertThatThrownBy(() -> IndexedCastFile.open(path, index))
+            .isInstanceOf(CastException.class);
+    }
+}
@@ -0,0 +1,42 @@
+package be.twofold.tinycast;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MappedBinaryReaderTest {
+    @Test
+    void testReadFloatsAndInts() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putFloat(1.5f).putFloat(-2.0f).putInt(3).putInt(-4).flip();
+
+        try (MappedBinaryReader reader = new MappedBinaryReader(buffer)) {
+            float[] floats = new float[3];
+            reader.readFloats(floats, 1, 2);
+            int[] ints = new int[2];
+            reader.readInts(ints, 0, 2);
+
+            assertThat(floats).containsExactly(0.0f, 1.5f, -2.0f);
+            assertThat(ints).containsExactly(3, -4);
+            assertThat(reader.position()).isEqualTo(16);
+        }
+    }
+
+    @Test
+    void testReadArrayLengthOverflow() throws Exception {
+        // 2^30 elements are 2^32 bytes, which wraps around to zero as an int
+        try (MappedBinaryReader reader = new MappedBinaryReader(ByteBuffer.allocate(16))) {
+            assertThatThrownBy(() -> reader.readFloats(new float[0], 0, 1 << 30))
+                .isInstanceOf(EOFException.class)
+                .hasMessage("Expected 4294967296 bytes but got 16");
+            assertThatThrownBy(() -> reader.readInts(new int[0], 0, 1 << 30))
+                .isInstanceOf(EOFException.class)
+                .hasMessage("Expected 4294967296 bytes but got 16");
+        }
+    }
+}
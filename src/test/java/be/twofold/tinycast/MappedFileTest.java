@@ -0,0 +1,33 @@
+package be.twofold.tinycast;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MappedFileTest {
+    @Test
+    void testLoadSlicesSharedMapping(@TempDir Path tempDir) throws Exception {
+        Path path = tempDir.resolve("data.bin");
+        Files.write(path, new byte[]{0, 1, 2, 3, 4, 5, 6, 7});
+
+        MappedFile file;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            file = new MappedFile(channel, (offset, length) -> {
+                throw new AssertionError("Fallback used for " + offset);
+            });
+        }
+
+        ByteBuffer first = file.load(2, 3);
+        ByteBuffer second = file.load(6, 2);
+        assertThat(first).isEqualTo(ByteBuffer.wrap(new byte[]{2, 3, 4}));
+        assertThat(second).isEqualTo(ByteBuffer.wrap(new byte[]{6, 7}));
+        assertThat(file.load(8, 0).remaining()).isZero();
+    }
+}
@@ -0,0 +1,42 @@
+package be.twofold.tinycast;
+
+import be.twofold.tinycast.generator.TypeParser;
+import be.twofold.tinycast.generator.model.PropertyDef;
+import be.twofold.tinycast.generator.model.TypeDef;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PropertyKeyTest {
+    @Test
+    void testKeysMatchDefinitions() throws Exception {
+        List<TypeDef> types = new TypeParser().parse(PropertyKeyTest.class.getResourceAsStream("/cast.json"));
+
+        Map<CastNodeID, List<String>> expected = new HashMap<>();
+        for (TypeDef type : types) {
+            for (PropertyDef property : type.properties()) {
+                String key = property.isArray() ? property.getKey() + "[]" : property.getKey();
+                expected.computeIfAbsent(type.type(), __ -> new ArrayList<>()).add(key);
+            }
+        }
+
+        assertThat(PropertyKey.KEYS).isEqualTo(expected);
+    }
+
+    @Test
+    void testLookup() {
+        PropertyKey key = PropertyKey.lookup(CastNodeID.MESH, PropertyKey.pack("vp"), 2);
+        assertThat(key.getName()).isEqualTo("vp");
+        assertThat(key.isArray()).isTrue();
+        assertThat(PropertyKey.slotNames(CastNodeID.MESH)[key.getSlot()]).isSameAs(key.getName());
+
+        PropertyKey unknown = PropertyKey.lookup(CastNodeID.MESH, PropertyKey.pack("xyz"), 3);
+        assertThat(unknown.getName()).isEqualTo("xyz");
+        assertThat(unknown.getSlot()).isEqualTo(-1);
+    }
+}
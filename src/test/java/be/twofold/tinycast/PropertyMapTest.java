@@ -0,0 +1,206 @@
+package be.twofold.tinycast;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PropertyMapTest {
+    @Test
+    void testKnownAndUnknownKeys() {
+        PropertyMap map = new PropertyMap(CastNodeID.BONE);
+        map.put("custom", property("custom", "a"));
+        map.put("p", property("p", 1));
+        map.put("n", property("n", "bone"));
+
+        assertThat(map).hasSize(3);
+        assertThat(map.get("n").getValue()).isEqualTo("bone");
+        assertThat(map.get("custom").getValue()).isEqualTo("a");
+        assertThat(map.get("lp")).isNull();
+        assertThat(map.keySet()).containsExactly("custom", "p", "n");
+        assertThat(map.values()).extracting(CastProperty::getName).containsExactly("custom", "p", "n");
+    }
+
+    @Test
+    void testInsertionOrderAfterRemove() {
+        PropertyMap map = new PropertyMap(CastNodeID.BONE);
+        map.put("x", property("x", 1));
+        map.put("p", property("p", 2));
+        map.put("y", property("y", 3));
+        map.put("n", property("n", "bone"));
+        map.put("z", property("z", 4));
+
+        map.remove("y");
+        map.remove("p");
+        map.put("p", property("p", 5));
+        map.put("x", property("x", 6));
+
+        assertThat(map.keySet()).containsExactly("x", "n", "z", "p");
+        assertThat(map.get("x").getValue()).isEqualTo(6);
+    }
+
+    @Test
+    void testPutResolvedKey() {
+        PropertyMap map = new PropertyMap(CastNodeID.MESH);
+        map.put(PropertyKey.of(CastNodeID.MESH, "f"), property("f", 1));
+        map.put(PropertyKey.of(CastNodeID.MESH, "u12"), property("u12", 2));
+        map.put(PropertyKey.of(CastNodeID.MESH, "custom"), property("custom", 3));
+        map.put(PropertyKey.of(CastNodeID.BONE, "s"), property("s", 4));
+
+        assertThat(map.get("f").getValue()).isEqualTo(1);
+        assertThat(map.get("u12").getValue()).isEqualTo(2);
+        assertThat(map.get("custom").getValue()).isEqualTo(3);
+        assertThat(map.get("s").getValue()).isEqualTo(4);
+        assertThat(map.keySet()).containsExactly("f", "u12", "custom", "s");
+    }
+
+    @Test
+    void testNumberedKeys() {
+        PropertyMap map = new PropertyMap(CastNodeID.MESH);
+        map.put("u1", property("u1", 1));
+        map.put("u12", property("u12", 2));
+
+        assertThat(map.get("u1").getValue()).isEqualTo(1);
+        assertThat(map.get("u12").getValue()).isEqualTo(2);
+        assertThat(map.keySet()).containsExactly("u1", "u12");
+    }
+
+    @Test
+    void testReplaceAndRemove() {
+        PropertyMap map = new PropertyMap(CastNodeID.BONE);
+        CastProperty first = property("n", "first");
+        assertThat(map.put("n", first)).isNull();
+        assertThat(map.put("n", property("n", "second"))).isEqualTo(first);
+        map.put("custom", property("custom", "a"));
+
+        assertThat(map).hasSize(2);
+        assertThat(map.remove("n").getValue()).isEqualTo("second");
+        assertThat(map.remove("custom").getValue()).isEqualTo("a");
+        assertThat(map.remove("n")).isNull();
+        assertThat(map).isEmpty();
+    }
+
+    @Test
+    void testScalarValues() {
+        PropertyMap map = new PropertyMap(CastNodeID.CURVE);
+        map.put("kp", new CastProperty(CastPropertyID.INTEGER_64, "kp", 1L << 40));
+        map.put("ab", new CastProperty(CastPropertyID.FLOAT, "ab", -0.0f));
+        map.put("m", new CastProperty(CastPropertyID.DOUBLE, "m", Double.NaN));
+        map.put("nn", new CastProperty(CastPropertyID.SHORT, "nn", (short) -2));
+        // Not the box the writer expects for the type, so it is kept as is
+        map.put("kb", new CastProperty(CastPropertyID.INTEGER_32, "kb", 3L));
+
+        assertThat(map.get("kp").getValue()).isEqualTo(1L << 40);
+        assertThat(map.get("ab").getValue()).isEqualTo(-0.0f);
+        assertThat(map.get("m").getValue()).isEqualTo(Double.NaN);
+        assertThat(map.get("nn").getValue()).isEqualTo((short) -2);
+        assertThat(map.get("kb").getValue()).isEqualTo(3L);
+        assertThat(map.get("kb").getIdentifier()).isEqualTo(CastPropertyID.INTEGER_32);
+    }
+
+    @Test
+    void testKeyMustMatchName() {
+        PropertyMap map = new PropertyMap(CastNodeID.BONE);
+        assertThatThrownBy(() -> map.put("n", property("p", 1)))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThat(map).isEmpty();
+    }
+
+    @Test
+    void testFootprint() throws Exception {
+        PropertyMap map = new PropertyMap(CastNodeID.BONE, 8);
+        map.put("n", property("n", "bone"));
+        map.put("p", property("p", 300));
+        map.put("ssc", new CastProperty(CastPropertyID.BYTE, "ssc", (byte) 1));
+        map.put("lp", new CastProperty(CastPropertyID.VECTOR_3, "lp", new Vec3(1, 2, 3)));
+        map.put("lr", new CastProperty(CastPropertyID.VECTOR_4, "lr", new Vec4(0, 0, 0, 1)));
+        map.put("wp", new CastProperty(CastPropertyID.VECTOR_3, "wp", new Vec3(1, 2, 3)));
+        map.put("wr", new CastProperty(CastPropertyID.VECTOR_4, "wr", new Vec4(0, 0, 0, 1)));
+        map.put("s", new CastProperty(CastPropertyID.VECTOR_3, "s", new Vec3(1, 1, 1)));
+
+        // The map and its own arrays, the names are shared by all nodes of the type
+        long actual = shallowSize(map);
+        for (Field field : PropertyMap.class.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || !field.getType().isArray()) {
+                continue;
+            }
+            field.setAccessible(true);
+            Object array = field.get(map);
+            if (array == null || array == PropertyKey.slotNames(CastNodeID.BONE) || array == PropertyKey.slotNameBytes(CastNodeID.BONE)) {
+                continue;
+            }
+            if (array instanceof Object[]) {
+                assertThat((Object[]) array).noneMatch(o -> o instanceof CastProperty || o instanceof Number);
+            }
+            actual += shallowSize(array);
+        }
+
+        // A LinkedHashMap with its table, and for every property an entry and a CastProperty,
+        // and a box for the one number that is not cached
+        long expected = instanceSize(LinkedHashMap.class)
+            + align(16 + 16 * 4)
+            + 8 * (instanceSize(Class.forName("java.util.LinkedHashMap$Entry")) + instanceSize(CastProperty.class))
+            + instanceSize(Integer.class);
+
+        assertThat(actual).isLessThan(expected / 2);
+    }
+
+    @Test
+    void testEqualsOtherMaps() {
+        Map<String, CastProperty> expected = new LinkedHashMap<>();
+        expected.put("custom", property("custom", "a"));
+        expected.put("n", property("n", "bone"));
+
+        PropertyMap map = PropertyMap.copyOf(CastNodeID.BONE, expected);
+        assertThat(map).isEqualTo(expected);
+        assertThat(map.hashCode()).isEqualTo(expected.hashCode());
+        assertThat(PropertyMap.copyOf(CastNodeID.BONE, map)).isSameAs(map);
+        assertThat(PropertyMap.copyOf(CastNodeID.MESH, map)).isNotSameAs(map).isEqualTo(map);
+    }
+
+    // Estimates sizes with compressed references and 8 byte alignment, like a default 64-bit JVM
+    private static long shallowSize(Object object) {
+        Class<?> type = object.getClass();
+        if (type.isArray()) {
+            return align(16 + (long) Array.getLength(object) * fieldSize(type.getComponentType()));
+        }
+        return instanceSize(type);
+    }
+
+    private static long instanceSize(Class<?> type) {
+        long size = 12;
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    size += fieldSize(field.getType());
+                }
+            }
+        }
+        return align(size);
+    }
+
+    private static int fieldSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class || !type.isPrimitive()) {
+            return 4;
+        }
+        return type == short.class || type == char.class ? 2 : 1;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7;
+    }
+
+    private static CastProperty property(String name, Object value) {
+        CastPropertyID identifier = value instanceof String ? CastPropertyID.STRING : CastPropertyID.INTEGER_32;
+        return new CastProperty(identifier, name, value);
+    }
+}
@@ -0,0 +1,68 @@
+package be.twofold.tinycast;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StreamBinaryReaderTest {
+    @Test
+    void testReadAcrossBufferBoundaries() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(200_000).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] longString = new byte[100_000];
+        Arrays.fill(longString, (byte) 'a');
+        buffer.put(new byte[65_533]).putInt(0x12345678).put(longString).put((byte) 0).putFloat(1.5f);
+        int end = buffer.position();
+
+        try (StreamBinaryReader reader = new StreamBinaryReader(trickle(buffer.array(), end))) {
+            reader.skip(65_533);
+            assertThat(reader.readInt()).isEqualTo(0x12345678);
+            assertThat(reader.readCString()).isEqualTo(new String(longString, StandardCharsets.US_ASCII));
+            assertThat(reader.position()).isEqualTo(end - Float.BYTES);
+            assertThat(reader.readFloat()).isEqualTo(1.5f);
+            assertThatThrownBy(reader::readByte).isInstanceOf(EOFException.class);
+        }
+    }
+
+    @Test
+    void testReadLargeBuffer() throws Exception {
+        byte[] bytes = new byte[300_000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+
+        try (StreamBinaryReader reader = new StreamBinaryReader(trickle(bytes, bytes.length))) {
+            reader.readByte();
+            ByteBuffer result = reader.readBuffer(bytes.length - 2);
+            assertThat(result.get(0)).isEqualTo((byte) 1);
+            assertThat(result.get(result.limit() - 1)).isEqualTo(bytes[bytes.length - 2]);
+            assertThat(reader.position()).isEqualTo(bytes.length - 1);
+            assertThat(reader.readByte()).isEqualTo(bytes[bytes.length - 1]);
+        }
+    }
+
+    // Returns at most 1000 bytes per read, and refuses to skip
+    private static InputStream trickle(byte[] bytes, int length) {
+        return new FilterInputStream(new ByteArrayInputStream(bytes, 0, length)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 1000));
+            }
+
+            @Override
+            public long skip(long n) {
+                return 0;
+            }
+        };
+    }
+}
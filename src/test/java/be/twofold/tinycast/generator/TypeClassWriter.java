@@ -142,6 +142,9 @@ final class TypeClassWriter {
             for (Set<CastPropertyID> subTypes : types) {
                 String suffix = types.size() == 1 ? "" : suffix(subTypes);
                 builder.addMethod(generatePropertySetter(property, subTypes, suffix, className));
+                if (property.isArray() && subTypes.equals(INTEGER_TYPES)) {
+                    builder.addMethod(generateIntBufferSetter(property, suffix, className));
+                }
             }
         }
 
@@ -171,12 +174,12 @@ final class TypeClassWriter {
         String methodName = single ? "getChildOfType" : "getChildrenOfType";
 
         MethodSpec getter = MethodSpec.methodBuilder("get" + (single ? childClassName : multiple(childClassName)))
-            .addJavadoc("Returns the child" + (single ? "" : "ren") + " of type {@link " + childClassName + "}.\n" +
+            .addJavadoc("Returns " + (single ? "the child" : "a read-only view of the children") + " of type {@link " + childClassName + "}.\n" +
                 "\n" +
                 "@return The " + (single ? "single " + childClassName : "list of " + multiple(childClassName)))
             .addModifiers(Modifier.PUBLIC)
             .returns(returnType)
-            .addStatement("return $L($T.class)", methodName, childType)
+            .addStatement("return $L($T.$L, $T.class)", methodName, CastNodeID.class, child, childType)
             .build();
 
         MethodSpec creator = MethodSpec.methodBuilder("create" + childClassName)
@@ -262,6 +265,27 @@ final class TypeClassWriter {
             .build();
     }
 
+    private MethodSpec generateIntBufferSetter(PropertyDef property, String suffix, ClassName className) {
+        String setKey = property.isIndexed()
+            ? '"' + property.getKey().replace("%d", "") + '"' + " + get" + property.upperCamelCase() + "Count()"
+            : '"' + property.getKey() + '"';
+
+        return MethodSpec.methodBuilder((property.isIndexed() ? "add" : "set") + property.upperCamelCase() + suffix)
+            .addJavadoc("Sets the value of the {@code \"" + property.getKey() + "\"} property (" + property.getName() + "),\n" +
+                "using a known maximum value to pick the smallest integer type without scanning the values.\n" +
+                "\n" +
+                "@param " + property.variableName() + " The new value.\n" +
+                "@param maxValue The largest value in the buffer, as an unsigned integer. Values above it are truncated.\n" +
+                "@return The {@code this} instance for chaining")
+            .addModifiers(Modifier.PUBLIC)
+            .returns(className)
+            .addParameter(parameterType(property, INTEGER_TYPES), property.variableName())
+            .addParameter(int.class, "maxValue")
+            .addStatement("createIntBufferProperty($L, $L, maxValue)", setKey, property.variableName())
+            .addStatement("return this")
+            .build();
+    }
+
     private CodeBlock generateSetterCode(PropertyDef property, Set<CastPropertyID> types) {
         String setKey = property.isIndexed()
             ? '"' + property.getKey().replace("%d", "") + '"' + " + get" + property.upperCamelCase() + "Count()"
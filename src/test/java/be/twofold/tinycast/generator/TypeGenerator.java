@@ -15,19 +15,19 @@ final class TypeGenerator {
     public static void main(String[] args) throws IOException {
         List<TypeDef> types = new TypeParser().parse(TypeGenerator.class.getResourceAsStream("/cast.json"));
 
-        Map<CastNodeID, List<String>> arrayTypes = new LinkedHashMap<>();
+        // Prints the known property keys for the hand-maintained table in PropertyKey
+        Map<CastNodeID, List<String>> keys = new LinkedHashMap<>();
         for (TypeDef type : types) {
             for (PropertyDef property : type.properties()) {
-                if (property.isArray()) {
-                    arrayTypes.computeIfAbsent(type.type(), __ -> new ArrayList<>()).add(property.getKey());
-                }
+                String key = property.isArray() ? property.getKey() + "[]" : property.getKey();
+                keys.computeIfAbsent(type.type(), __ -> new ArrayList<>()).add(key);
             }
         }
 
-        for (Map.Entry<CastNodeID, List<String>> type : arrayTypes.entrySet()) {
+        for (Map.Entry<CastNodeID, List<String>> type : keys.entrySet()) {
             String props = type.getValue().stream()
                 .collect(Collectors.joining("\", \"", "\"", "\""));
-            System.out.println("CastNodeID." + type.getKey() + ", Set.of(" + props + "),");
+            System.out.println("Map.entry(CastNodeID." + type.getKey() + ", List.of(" + props + ")),");
         }
 
         new TypeClassWriter().generate(types);